@@ -0,0 +1,75 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试和评估使用的 key 序列生成工具
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public final class KeyTrace {
+
+    /**
+     * 生成的 key 从这个值开始, 与真实的 userId/blogId 一样是较大的 long
+     */
+    public static final long KEY_BASE = 1_000_000_000L;
+
+    private KeyTrace() {
+    }
+
+    /**
+     * 按分布名称生成 key 序列, zipf 使用 skew 作为指数, uniform 忽略 skew
+     */
+    public static long[] generate(String distribution, int keys, double skew, int length, long seed) {
+        return switch (distribution) {
+            case "zipf" -> zipf(keys, skew, length, seed);
+            case "uniform" -> uniform(keys, length, seed);
+            default -> throw new IllegalArgumentException("未知的分布: " + distribution);
+        };
+    }
+
+    /**
+     * 生成服从 Zipf 分布的 key 序列, 第 i 个 key(从 0 开始)出现的概率正比于 1 / (i + 1)^skew
+     */
+    public static long[] zipf(int keys, double skew, int length, long seed) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            rank = rank < 0 ? Math.min(-rank - 1, keys - 1) : rank;
+            trace[i] = KEY_BASE + rank;
+        }
+        return trace;
+    }
+
+    /**
+     * 生成服从均匀分布的 key 序列
+     */
+    public static long[] uniform(int keys, int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            trace[i] = KEY_BASE + random.nextInt(keys);
+        }
+        return trace;
+    }
+
+    /**
+     * 把 long 序列转为字符串序列, 供 add(String, int) 使用, 避免在测量过程中调用 Long.toString()
+     */
+    public static String[] toStrings(long[] trace) {
+        String[] strings = new String[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            strings[i] = Long.toString(trace[i]);
+        }
+        return strings;
+    }
+
+}
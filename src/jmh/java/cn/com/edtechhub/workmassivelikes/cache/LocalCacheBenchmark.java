@@ -0,0 +1,92 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caffeine 本地缓存的吞吐基准测试
+ * 模拟 thumbAddDoUseCaffeine 中热点用户的访问模式: 先 getIfPresent, 不存在时再 put, key 分别服从 Zipf 分布和均匀分布
+ * 运行: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="LocalCacheBenchmark -prof gc"
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalCacheBenchmark {
+
+    private static final int TRACE_LENGTH = 1 << 20;
+
+    @Param({"zipf", "uniform"})
+    public String distribution;
+
+    @Param({"100000"})
+    public int keys;
+
+    @Param({"1.1"})
+    public double skew;
+
+    private Cache<String, Object> localCache;
+
+    private String[] userIds;
+
+    private String[] userThumbKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        localCache = new CacheManager().localCache(); // 与应用中的 localCache 配置完全一致
+        userIds = KeyTrace.toStrings(KeyTrace.generate(distribution, keys, skew, TRACE_LENGTH, 42));
+        userThumbKeys = new String[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            userThumbKeys[i] = "thumb:" + userIds[i];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int index;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = (int) (Thread.currentThread().threadId() * 0x9E3779B9L);
+        }
+
+        int next() {
+            return index++ & (TRACE_LENGTH - 1);
+        }
+
+    }
+
+    private Object getOrPut(int index) {
+        Object value = localCache.getIfPresent(userIds[index]);
+        if (value == null) {
+            localCache.put(userIds[index], userThumbKeys[index]);
+        }
+        return value;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object getOrPut1Thread(Cursor cursor) {
+        return getOrPut(cursor.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object getOrPut8Threads(Cursor cursor) {
+        return getOrPut(cursor.next());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object getOrPut64Threads(Cursor cursor) {
+        return getOrPut(cursor.next());
+    }
+
+}
@@ -0,0 +1,110 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * LongHashSet 与 HashSet<Long> 的内存对比报告(不需要外部依赖, 直接在当前 JVM 中统计)
+ * 对每一种集合大小分别构造 sets 个集合, 元素为与 ThumbLayoutMemoryReport 相同格式的雪花算法博文 ID, 按点赞顺序逐个添加(与本地缓存中的用法一致), 输出:
+ * (1)bytesPerSet: 每个集合占用的字节数
+ * (2)bytesPerLike: 每个点赞(元素)占用的字节数
+ * 内存按多次 System.gc() 之后已用堆的差值统计, 元素数组在统计前生成并且一直保持可达, 不计入结果; 建议使用 -Xmx 足够大且固定的堆, 结果会有少量噪声
+ * 运行: ./mvnw -Pjmh test-compile exec:exec -Djmh.main=cn.com.edtechhub.workmassivelikes.cache.LongHashSetMemoryReport -Djmh.args="--likes=10,100,1000,1000000"
+ * 参数(均为 --name=value, 列表用逗号分隔):
+ * likes(每个集合的元素个数), totalLikes(每一种集合大小的元素总数, 决定集合个数 sets = max(1, totalLikes / likes))
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class LongHashSetMemoryReport {
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+        List<String> likesList = list(options.getOrDefault("likes", "10,100,1000,10000,1000000"));
+        int totalLikes = Integer.parseInt(options.getOrDefault("totalLikes", "1000000"));
+
+        System.out.printf("# java %s, max heap %d MB%n", System.getProperty("java.version"), Runtime.getRuntime().maxMemory() / 1024 / 1024);
+        System.out.println("likes,sets,structure,bytesPerSet,bytesPerLike");
+
+        Random random = new Random(42);
+        for (String likesValue : likesList) {
+            int likes = Integer.parseInt(likesValue);
+            int sets = Math.max(1, totalLikes / likes);
+            long[][] blogIds = new long[sets][];
+            for (int set = 0; set < sets; set++) {
+                blogIds[set] = ThumbLayoutMemoryReport.snowflakeIds(likes, random);
+            }
+
+            long longHashSetBytes = measure(() -> {
+                LongHashSet[] holders = new LongHashSet[sets];
+                for (int set = 0; set < sets; set++) {
+                    holders[set] = new LongHashSet();
+                    for (long blogId : blogIds[set]) {
+                        holders[set].add(blogId);
+                    }
+                }
+                return holders;
+            });
+            print(likes, sets, "LongHashSet", longHashSetBytes);
+
+            long hashSetBytes = measure(() -> {
+                @SuppressWarnings("unchecked")
+                Set<Long>[] holders = new Set[sets];
+                for (int set = 0; set < sets; set++) {
+                    holders[set] = new HashSet<>();
+                    for (long blogId : blogIds[set]) {
+                        holders[set].add(blogId);
+                    }
+                }
+                return holders;
+            });
+            print(likes, sets, "HashSet<Long>", hashSetBytes);
+
+            Reference.reachabilityFence(blogIds);
+        }
+    }
+
+    /**
+     * 统计 builder 构造出的对象在堆中占用的字节数(构造前后已用堆的差值)
+     */
+    static long measure(Supplier<Object> builder) throws InterruptedException {
+        long before = usedHeap();
+        Object holders = builder.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(holders);
+        return after - before;
+    }
+
+    /**
+     * 多次 GC 之后的已用堆字节数
+     */
+    static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static void print(int likes, int sets, String structure, long bytes) {
+        System.out.printf("%d,%d,%s,%d,%.2f%n", likes, sets, structure, bytes / sets, (double) bytes / sets / likes);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static List<String> list(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(item -> !item.isEmpty()).toList();
+    }
+
+}
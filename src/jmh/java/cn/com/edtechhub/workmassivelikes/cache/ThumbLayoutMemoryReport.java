@@ -0,0 +1,198 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.*;
+
+/**
+ * 用户点赞记录键布局的内存对比报告(需要一个可以写入的 Redis, 只写入带 prefix 前缀的临时键, 结束后全部删除)
+ * 对每一种点赞数分别写入 users 个用户的 flat 布局和各种分裂阈值的 bucketed 布局, 用 MEMORY USAGE 统计每个键的内存, 输出:
+ * (1)keysPerUser: 每个用户实际占用的键个数(分桶布局包含桶数键 thumb:{userId}:buckets)
+ * (2)listpackRatio: 保持 listpack 编码的哈希键的比例
+ * (3)bytesPerUser/bytesPerLike: 每个用户、每个点赞占用的字节数
+ * 博文 ID 按雪花算法的格式生成, 分桶布局按点赞顺序逐个写入, 使用与 ThumbKeyLayout.bucket() 和 Lua 脚本完全相同的寻址和分裂规则
+ * 运行: ./mvnw -Pjmh test-compile exec:exec -Djmh.main=cn.com.edtechhub.workmassivelikes.cache.ThumbLayoutMemoryReport -Djmh.args="--host=127.0.0.1 --port=6379"
+ * 参数(均为 --name=value, 列表用逗号分隔):
+ * host, port, password, prefix, users, likes, splitEntries(分桶布局触发分裂的桶内记录数, 线上使用 ThumbConstant.USER_THUMB_BUCKET_SPLIT_ENTRIES)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class ThumbLayoutMemoryReport {
+
+    /**
+     * 雪花算法的起始时间戳(与 MyBatis-Plus 的默认值一致)
+     */
+    private static final long SNOWFLAKE_EPOCH = 1288834974657L;
+
+    /**
+     * 单个用户单种布局的统计结果
+     */
+    record Usage(int keys, int hashKeys, int listpackKeys, long bytes) {
+
+        Usage plus(Usage other) {
+            return new Usage(keys + other.keys, hashKeys + other.hashKeys, listpackKeys + other.listpackKeys, bytes + other.bytes);
+        }
+
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parse(args);
+        String prefix = options.getOrDefault("prefix", "thumb-layout-report");
+        int users = Integer.parseInt(options.getOrDefault("users", "20"));
+        List<String> likesList = list(options.getOrDefault("likes", "10,50,128,500,1000,5000,20000"));
+        List<String> splitEntriesList = list(options.getOrDefault("splitEntries", "32,64,100"));
+
+        try (Jedis jedis = new Jedis(options.getOrDefault("host", "127.0.0.1"), Integer.parseInt(options.getOrDefault("port", "6379")))) {
+            if (options.containsKey("password")) {
+                jedis.auth(options.get("password"));
+            }
+            System.out.printf("# redis %s, hash-max-listpack-entries=%s, users=%d%n",
+                    jedis.info("server").lines().filter(line -> line.startsWith("redis_version:")).findFirst().orElse("redis_version:?").substring("redis_version:".length()),
+                    jedis.configGet("hash-max-listpack-entries").values().stream().findFirst().orElse("?"),
+                    users);
+            System.out.println("likes,layout,splitEntries,keysPerUser,listpackRatio,bytesPerUser,bytesPerLike");
+
+            Random random = new Random(42);
+            for (String likesValue : likesList) {
+                int likes = Integer.parseInt(likesValue);
+                long[][] blogIds = new long[users][];
+                for (int user = 0; user < users; user++) {
+                    blogIds[user] = snowflakeIds(likes, random);
+                }
+
+                Usage flat = new Usage(0, 0, 0, 0);
+                for (int user = 0; user < users; user++) {
+                    flat = flat.plus(measure(jedis, Map.of(prefix + ":flat:" + user, fields(blogIds[user])), null, 0));
+                }
+                print(likes, "flat", 0, users, flat);
+
+                for (String splitEntriesValue : splitEntriesList) {
+                    int splitEntries = Integer.parseInt(splitEntriesValue);
+                    Usage bucketed = new Usage(0, 0, 0, 0);
+                    for (int user = 0; user < users; user++) {
+                        String userKey = prefix + ":bucketed:" + user;
+                        List<Map<String, String>> buckets = split(blogIds[user], splitEntries);
+                        Map<String, Map<String, String>> keys = new LinkedHashMap<>();
+                        for (int bucket = 0; bucket < buckets.size(); bucket++) {
+                            if (!buckets.get(bucket).isEmpty()) {
+                                keys.put(userKey + ":" + bucket, buckets.get(bucket));
+                            }
+                        }
+                        bucketed = bucketed.plus(measure(jedis, keys, buckets.size() > 1 ? userKey + ":buckets" : null, buckets.size()));
+                    }
+                    print(likes, "bucketed", splitEntries, users, bucketed);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按点赞顺序逐个写入分桶布局并在桶满时分裂, 返回每个桶的记录(下标为桶号), 规则与 LuaScriptConstant.BUCKETED_FUNCTIONS 相同
+     */
+    static List<Map<String, String>> split(long[] blogIds, int splitEntries) {
+        List<Map<String, String>> buckets = new ArrayList<>();
+        buckets.add(new HashMap<>());
+        for (long blogId : blogIds) {
+            Map<String, String> bucket = buckets.get(ThumbKeyLayout.bucket(blogId, buckets.size()));
+            bucket.put(Long.toString(blogId), "1");
+            if (bucket.size() <= splitEntries) {
+                continue;
+            }
+            int size = buckets.size();
+            int level = Integer.highestOneBit(size);
+            Map<String, String> from = buckets.get(size - level);
+            Map<String, String> to = new HashMap<>();
+            from.keySet().removeIf(field -> {
+                if (ThumbKeyLayout.bucketHash(Long.parseLong(field)) % (level * 2L) != size) {
+                    return false;
+                }
+                to.put(field, "1");
+                return true;
+            });
+            buckets.add(to);
+        }
+        return buckets;
+    }
+
+    /**
+     * 写入一个用户的点赞记录(一个或多个哈希键, 以及可选的桶数键), 统计内存后删除
+     */
+    static Usage measure(Jedis jedis, Map<String, Map<String, String>> keys, String countKey, int count) {
+        Pipeline pipeline = jedis.pipelined();
+        keys.forEach(pipeline::hset);
+        List<Response<Long>> bytes = new ArrayList<>();
+        List<Response<String>> encodings = new ArrayList<>();
+        for (String key : keys.keySet()) {
+            bytes.add(pipeline.memoryUsage(key, 0));
+            encodings.add(pipeline.objectEncoding(key));
+        }
+        Response<Long> countBytes = null;
+        if (countKey != null) {
+            pipeline.set(countKey, Integer.toString(count));
+            countBytes = pipeline.memoryUsage(countKey, 0);
+            pipeline.del(countKey);
+        }
+        pipeline.del(keys.keySet().toArray(String[]::new));
+        pipeline.sync();
+
+        long total = countBytes == null ? 0 : countBytes.get();
+        int listpackKeys = 0;
+        for (int i = 0; i < bytes.size(); i++) {
+            total += bytes.get(i).get();
+            if ("listpack".equals(encodings.get(i).get()) || "ziplist".equals(encodings.get(i).get())) {
+                listpackKeys++;
+            }
+        }
+        return new Usage(keys.size() + (countKey == null ? 0 : 1), keys.size(), listpackKeys, total);
+    }
+
+    /**
+     * 一个用户的全部点赞记录(平铺布局的哈希字段)
+     */
+    static Map<String, String> fields(long[] blogIds) {
+        Map<String, String> fields = new HashMap<>();
+        for (long blogId : blogIds) {
+            fields.put(Long.toString(blogId), "1");
+        }
+        return fields;
+    }
+
+    /**
+     * 生成 count 个互不相同、格式与雪花算法一致的博文 ID
+     */
+    static long[] snowflakeIds(int count, Random random) {
+        Set<Long> ids = new LinkedHashSet<>();
+        long timestamp = System.currentTimeMillis() - SNOWFLAKE_EPOCH;
+        while (ids.size() < count) {
+            timestamp -= random.nextInt(1000 * 60 * 60); // 博文在过去的一段时间内陆续发布
+            ids.add(timestamp << 22 | (long) random.nextInt(1 << 22));
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static void print(int likes, String layout, int splitEntries, int users, Usage usage) {
+        System.out.printf("%d,%s,%d,%.2f,%.4f,%d,%.2f%n",
+                likes, layout, splitEntries,
+                (double) usage.keys() / users,
+                (double) usage.listpackKeys() / usage.hashKeys(),
+                usage.bytes() / users,
+                (double) usage.bytes() / users / likes);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static List<String> list(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(item -> !item.isEmpty()).toList();
+    }
+
+}
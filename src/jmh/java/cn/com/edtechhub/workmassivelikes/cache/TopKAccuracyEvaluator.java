@@ -0,0 +1,170 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.enums.TopKTypeEnum;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * TopK 热点探测的离线精度评估工具
+ * 把一段 key 序列(合成的 Zipf/均匀分布, 或者每行一个 key 的录制文件)回放给 TopK 实现, 与精确计数对比得到:
+ * (1)precision: list() 返回的元素中真正属于前 k 的比例
+ * (2)recall: 真正的前 k 中被 list() 找到的比例
+ * (3)countError: 被找到的元素的计数相对真实计数的平均相对误差
+ * 并对 width/depth/decay/minCount 做网格搜索, 最后给出达到目标 recall 时内存估算最小的参数
+ * 运行: ./mvnw -Pjmh test-compile exec:exec -Djmh.main=cn.com.edtechhub.workmassivelikes.cache.TopKAccuracyEvaluator -Djmh.args="--trace=zipf --skew=1.1"
+ * 参数(均为 --name=value, 列表用逗号分隔):
+ * trace(zipf | uniform | 文件路径), keys, skew, length, k, types, widths, depths, decays, minCounts, targetRecall
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class TopKAccuracyEvaluator {
+
+    /**
+     * 单组参数的评估结果
+     */
+    record Result(String type, int width, int depth, double decay, int minCount, long memoryBytes, double precision, double recall, double countError) {
+
+        @Override
+        public String toString() {
+            return String.format("%s,%d,%d,%.2f,%d,%d,%.4f,%.4f,%.4f", type, width, depth, decay, minCount, memoryBytes, precision, recall, countError);
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int k = Integer.parseInt(options.getOrDefault("k", "100"));
+        long[] trace = loadTrace(options);
+        double targetRecall = Double.parseDouble(options.getOrDefault("targetRecall", "0.95"));
+
+        // 精确计数, 作为对比的基准
+        Map<Long, Integer> exact = new HashMap<>();
+        for (long key : trace) {
+            exact.merge(key, 1, Integer::sum);
+        }
+        List<Map.Entry<Long, Integer>> sorted = new ArrayList<>(exact.entrySet());
+        sorted.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        Set<String> trueTop = sorted.subList(0, Math.min(k, sorted.size())).stream()
+                .map(entry -> Long.toString(entry.getKey()))
+                .collect(Collectors.toSet());
+        System.out.printf("# trace length=%d, distinct keys=%d, k=%d%n", trace.length, exact.size(), k);
+        System.out.println("type,width,depth,decay,minCount,memoryBytes,precision,recall,countError");
+
+        List<Result> results = new ArrayList<>();
+        Set<String> evaluated = new HashSet<>();
+        for (String type : list(options.getOrDefault("types", "heavy-keeper"))) {
+            for (String width : list(options.getOrDefault("widths", "1000,5000,20000,100000"))) {
+                for (String depth : list(options.getOrDefault("depths", "2,3,5"))) {
+                    for (String decay : list(options.getOrDefault("decays", "0.9,0.92,0.95"))) {
+                        for (String minCount : list(options.getOrDefault("minCounts", "1,10"))) {
+                            // Space-Saving 和 Count-Min 不使用部分参数, 跳过只有这些参数不同的重复组合
+                            String effective = effectiveParams(type, width, depth, decay, minCount);
+                            if (!evaluated.add(effective)) {
+                                continue;
+                            }
+                            Result result = evaluate(type, k, Integer.parseInt(width), Integer.parseInt(depth),
+                                    Double.parseDouble(decay), Integer.parseInt(minCount), trace, exact, trueTop);
+                            results.add(result);
+                            System.out.println(result);
+                        }
+                    }
+                }
+            }
+        }
+
+        // 每种实现中达到目标 recall 的内存最小的参数
+        results.stream()
+                .filter(result -> result.recall() >= targetRecall)
+                .collect(Collectors.groupingBy(Result::type, Collectors.minBy(Comparator.comparingLong(Result::memoryBytes))))
+                .forEach((type, best) -> System.out.printf("# best %s for recall >= %.2f: %s%n", type, targetRecall, best.map(Result::toString).orElse("none")));
+    }
+
+    /**
+     * 回放序列并计算一组参数的精度
+     */
+    static Result evaluate(String type, int k, int width, int depth, double decay, int minCount, long[] trace, Map<Long, Integer> exact, Set<String> trueTop) throws Exception {
+        TopK topK = TopKFactory.create(type, k, width, depth, decay, minCount);
+        try {
+            for (long key : trace) {
+                topK.add(key, 1);
+            }
+            if (topK instanceof StripedTopK striped) {
+                striped.merge(); // 共享视图由后台线程定期合并, 这里强制合并一次
+            }
+
+            List<Item> reported = topK.list();
+            int hits = 0;
+            double errorSum = 0;
+            for (Item item : reported) {
+                if (trueTop.contains(item.key())) {
+                    hits++;
+                    int actual = exact.get(Long.parseLong(item.key()));
+                    errorSum += Math.abs(item.count() - actual) / (double) actual;
+                }
+            }
+            double precision = reported.isEmpty() ? 0 : hits / (double) reported.size();
+            double recall = trueTop.isEmpty() ? 0 : hits / (double) trueTop.size();
+            double countError = hits == 0 ? 0 : errorSum / hits;
+            return new Result(type, width, depth, decay, minCount, estimateBytes(type, k, width, depth), precision, recall, countError);
+        } finally {
+            TopKFactory.close(topK);
+        }
+    }
+
+    /**
+     * 估算一组参数下草图和最小堆占用的内存字节数(按压缩指针估算对象头和引用, 不含 key 字符串本身)
+     */
+    static long estimateBytes(String type, int k, int width, int depth) {
+        long heap = k * 48L; // Node 对象, 堆数组引用和索引表引用
+        return switch (Objects.requireNonNull(TopKTypeEnum.getEnumByValue(type))) {
+            case HEAVY_KEEPER -> (long) depth * width * (4 + 24) + heap; // 引用 + Bucket 对象
+            case PACKED_HEAVY_KEEPER, STRIPED_HEAVY_KEEPER -> (long) depth * width * 8 + heap;
+            case WINDOWED_HEAVY_KEEPER -> 5L * depth * width * 8 + heap; // TopKFactory 中的 4 个窗口 + 1 个预留的空闲子草图(正常轮转时空闲的个数)
+            case SPACE_SAVING -> Math.max(k, width) * 48L;
+            case COUNT_MIN_HEAP -> (long) depth * width * 4 + heap;
+        };
+    }
+
+    /**
+     * 加载 key 序列
+     */
+    static long[] loadTrace(Map<String, String> options) throws IOException {
+        String trace = options.getOrDefault("trace", "zipf");
+        int keys = Integer.parseInt(options.getOrDefault("keys", "100000"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.1"));
+        int length = Integer.parseInt(options.getOrDefault("length", "1000000"));
+        if (trace.equals("zipf") || trace.equals("uniform")) {
+            return KeyTrace.generate(trace, keys, skew, length, 42);
+        }
+        try (var lines = Files.lines(Path.of(trace))) {
+            return lines.map(String::trim).filter(line -> !line.isEmpty()).mapToLong(Long::parseLong).toArray();
+        }
+    }
+
+    private static String effectiveParams(String type, String width, String depth, String decay, String minCount) {
+        return switch (Objects.requireNonNull(TopKTypeEnum.getEnumByValue(type), "未知的 TopK 实现类型: " + type)) {
+            case SPACE_SAVING -> String.join("/", type, width, minCount);
+            case COUNT_MIN_HEAP -> String.join("/", type, width, depth, minCount);
+            default -> String.join("/", type, width, depth, decay, minCount);
+        };
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static List<String> list(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(item -> !item.isEmpty()).toList();
+    }
+
+}
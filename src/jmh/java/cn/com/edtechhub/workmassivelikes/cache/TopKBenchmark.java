@@ -0,0 +1,137 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TopK 热点探测的吞吐基准测试
+ * 覆盖 1/8/64 线程下的 add, 以及 list() 和 fading(), key 分别服从 Zipf 分布和均匀分布
+ * 运行: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="TopKBenchmark -prof gc"(-prof gc 用于输出每次操作的分配字节数)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopKBenchmark {
+
+    /**
+     * 预生成的 key 序列长度(2 的幂, 方便取模)
+     */
+    private static final int TRACE_LENGTH = 1 << 20;
+
+    @Param({"heavy-keeper", "packed-heavy-keeper", "striped-heavy-keeper", "windowed-heavy-keeper", "space-saving", "count-min-heap"})
+    public String type;
+
+    @Param({"zipf", "uniform"})
+    public String distribution;
+
+    /**
+     * 不同的 key 的个数(相当于活跃用户数)
+     */
+    @Param({"100000"})
+    public int keys;
+
+    /**
+     * Zipf 分布的指数
+     */
+    @Param({"1.1"})
+    public double skew;
+
+    private TopK topK;
+
+    private long[] trace;
+
+    private String[] stringTrace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        topK = TopKFactory.create(type);
+        trace = KeyTrace.generate(distribution, keys, skew, TRACE_LENGTH, 42);
+        stringTrace = KeyTrace.toStrings(trace);
+        // 预热草图和最小堆, 让 list()/fading() 测量的是填满之后的状态
+        for (long key : trace) {
+            topK.add(key, 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        TopKFactory.close(topK);
+    }
+
+    /**
+     * 每个线程独立的 key 游标
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int index;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = (int) (Thread.currentThread().threadId() * 0x9E3779B9L); // 不同线程从序列的不同位置开始
+        }
+
+        int next() {
+            return index++ & (TRACE_LENGTH - 1);
+        }
+
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addLong1Thread(Cursor cursor) {
+        return topK.add(trace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean addLong8Threads(Cursor cursor) {
+        return topK.add(trace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean addLong64Threads(Cursor cursor) {
+        return topK.add(trace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AddResult addString1Thread(Cursor cursor) {
+        return topK.add(stringTrace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AddResult addString8Threads(Cursor cursor) {
+        return topK.add(stringTrace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public AddResult addString64Threads(Cursor cursor) {
+        return topK.add(stringTrace[cursor.next()], 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<Item> list() {
+        return topK.list();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void fading(Blackhole blackhole) {
+        topK.fading();
+        blackhole.consume(topK.total());
+    }
+
+}
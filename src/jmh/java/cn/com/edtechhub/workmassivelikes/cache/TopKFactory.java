@@ -0,0 +1,49 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.enums.TopKTypeEnum;
+
+import java.util.Objects;
+
+/**
+ * 基准测试和评估使用的 TopK 构造工具, 与 CacheManager 中的构造方式保持一致, 但所有参数都可以调整
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public final class TopKFactory {
+
+    private TopKFactory() {
+    }
+
+    /**
+     * 按 CacheManager 中的默认参数构造
+     */
+    public static TopK create(String type) {
+        int width = TopKTypeEnum.SPACE_SAVING.getValue().equals(type) ? 1000 : 100000; // Space-Saving 的计数器数量默认为 1000
+        return create(type, 100, width, 5, 0.92, 10);
+    }
+
+    /**
+     * 按指定参数构造, Space-Saving 使用 width 作为计数器数量, 其余实现的附加参数使用配置文件中的默认值
+     */
+    public static TopK create(String type, int k, int width, int depth, double decay, int minCount) {
+        TopKTypeEnum typeEnum = Objects.requireNonNull(TopKTypeEnum.getEnumByValue(type), "未知的 TopK 实现类型: " + type);
+        return switch (typeEnum) {
+            case HEAVY_KEEPER -> new HeavyKeeper(k, width, depth, decay, minCount);
+            case PACKED_HEAVY_KEEPER -> new PackedHeavyKeeper(k, width, depth, decay, minCount);
+            case STRIPED_HEAVY_KEEPER -> new StripedTopK(k, width, depth, decay, minCount, 0, 1000);
+            case WINDOWED_HEAVY_KEEPER -> new WindowedTopK(k, width, depth, decay, minCount, 4, 5000);
+            case SPACE_SAVING -> new SpaceSavingTopK(k, width, minCount);
+            case COUNT_MIN_HEAP -> new CountMinTopK(k, width, depth, minCount);
+        };
+    }
+
+    /**
+     * 释放实现中的后台资源(比如 StripedTopK 的合并线程)
+     */
+    public static void close(TopK topK) throws Exception {
+        if (topK instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+}
@@ -0,0 +1,399 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.LuaScriptConstant;
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.mapper.ThumbMapper;
+import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
+import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 博文点赞用户索引(每篇博文一个 Roaring 位图, 保存点赞过的 userId)
+ * thumb 表只有以 user_id 开头的索引, "谁点赞了这篇博文" 和 "这篇博文有多少不同用户点赞" 只能扫表, 这里改为在内存中维护位图:
+ * (1)查询: 基数、成员判断和交集(例如好友中谁点赞了这篇博文)都直接在位图上计算, 耗时在微秒级
+ * (2)加载: 本地未命中时读取 Redis 中的快照(likers:{blogId})并重放之后的增量日志(likers:{blogId}:log), 没有快照时按 blog_id 从 MySQL 构建(依赖 idx_blog_id 索引)并保存为快照
+ * (3)更新: 点赞记录写入 MySQL 之后只把新增和删除的 userId 作为增量追加到日志, 由追加脚本分配连续的序号并在脚本内广播, 每个实例(包括自己)按序号把同样的增量应用到本地副本
+ *     每次点赞的开销只与增量的个数有关, 与博文的点赞用户数无关, 热门博文上不会每次点赞都序列化、传输、重新读取整个位图
+ * (4)顺序: 脚本串行执行, 广播的顺序与序号一致, 本地副本只在序号连续时应用增量, 发现缺口(订阅断线、键被删除后重新开始)时丢弃副本, 下次使用时重新读取
+ * (5)合并: 定时任务把增量较多的本地副本写回为新的快照, 并删除日志中已经合并的增量(见 CompactBlogLikersIndexJob), 日志的长度大约不超过 compact-threshold
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class BlogLikersIndex {
+
+    /**
+     * 读取时快照被其他实例抢先保存后最多重新读取的次数
+     */
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    /**
+     * 脚本的参数和结果都按原始字节传递(快照是二进制数据, 不经过 RedisTemplate 的值序列化器)
+     */
+    private static final RedisSerializer<byte[]> BYTES = RedisSerializer.byteArray();
+
+    /**
+     * 注入点赞映射
+     */
+    @Resource
+    private ThumbMapper thumbMapper;
+
+    /**
+     * 注入 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注入 Redis 消息监听容器
+     */
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 本地最多缓存的博文个数
+     */
+    @Value("${cache.likers-index.maximum-size:10000}")
+    private long maximumSize;
+
+    /**
+     * Redis 中快照、增量日志和序号的过期秒数
+     */
+    @Value("${cache.likers-index.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    /**
+     * 本地副本比快照多出多少个增量时合并为新的快照
+     */
+    @Value("${cache.likers-index.compact-threshold:1000}")
+    private long compactThreshold;
+
+    /**
+     * blogId -> 点赞用户位图及其增量序号(位图本身不是线程安全的, 读写时对副本加锁)
+     */
+    private Cache<Long, Likers> likers;
+
+    /**
+     * 本地的位图副本, 已经应用到的增量序号, 以及已知的 Redis 中快照的增量序号
+     */
+    private static final class Likers {
+
+        private final Roaring64NavigableMap bitmap;
+
+        private long version;
+
+        private long snapshotVersion;
+
+        private Likers(Roaring64NavigableMap bitmap, long version) {
+            this.bitmap = bitmap;
+            this.version = version;
+            this.snapshotVersion = version;
+        }
+
+    }
+
+    /**
+     * 创建本地缓存, 并订阅增量频道(消息由追加脚本直接发布, 不经过值序列化器)
+     */
+    @PostConstruct
+    public void init() {
+        this.likers = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 3);
+            long[] deltas = Arrays.stream(parts[2].split(",")).mapToLong(Long::parseLong).toArray();
+            this.apply(Long.valueOf(parts[0]), Long.parseLong(parts[1]), deltas);
+        }, new ChannelTopic(ThumbConstant.BLOG_LIKERS_DELTA_CHANNEL));
+    }
+
+    /**
+     * 点赞过这篇博文的不同用户个数
+     */
+    public long count(Long blogId) {
+        Likers entry = likers.get(blogId, this::load);
+        synchronized (entry) {
+            return entry.bitmap.getLongCardinality();
+        }
+    }
+
+    /**
+     * 返回 userIds 中点赞过这篇博文的用户(保持原有顺序), 用于成员判断和交集查询
+     */
+    public List<Long> retain(Long blogId, Collection<Long> userIds) {
+        Likers entry = likers.get(blogId, this::load);
+        List<Long> result = new ArrayList<>();
+        synchronized (entry) {
+            for (Long userId : userIds) {
+                if (userId != null && entry.bitmap.contains(userId)) {
+                    result.add(userId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 点赞记录已经写入 MySQL, 把对应博文的增量追加到日志
+     *
+     * @param added   新增的点赞记录 blogId -> userIds
+     * @param removed 删除的点赞记录 blogId -> userIds
+     */
+    public void update(Map<Long, List<Long>> added, Map<Long, List<Long>> removed) {
+        Set<Long> blogIds = new HashSet<>(added.keySet());
+        blogIds.addAll(removed.keySet());
+        for (Long blogId : blogIds) {
+            try {
+                this.append(blogId, added.getOrDefault(blogId, List.of()), removed.getOrDefault(blogId, List.of()));
+            } catch (RuntimeException e) {
+                // 增量没有写入日志时丢弃本地副本并删除 Redis 中的全部键, 下次读取时从 MySQL 构建, 新的序号一定更大, 其他实例收到之后的增量时会发现缺口
+                likers.invalidate(blogId);
+                redisTemplate.delete(keys(blogId));
+                log.warn("博文 {} 的点赞用户索引更新失败, 丢弃后重建", blogId, e);
+            }
+        }
+    }
+
+    /**
+     * 在当前事务提交之后再更新位图(回滚时不更新), 没有事务时直接更新
+     */
+    public void updateAfterCommit(Map<Long, List<Long>> added, Map<Long, List<Long>> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.update(added, removed);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update(added, removed);
+            }
+        });
+    }
+
+    /**
+     * 把本地副本中增量较多的博文合并为 Redis 中新的快照, 返回合并的博文个数
+     */
+    public int compact() {
+        int compacted = 0;
+        for (Map.Entry<Long, Likers> item : likers.asMap().entrySet()) {
+            Long blogId = item.getKey();
+            Likers entry = item.getValue();
+            synchronized (entry) {
+                if (entry.version - entry.snapshotVersion < compactThreshold) {
+                    continue;
+                }
+            }
+            try {
+                // 其他实例可能已经合并过, 先读取快照的序号, 避免每个实例都序列化一次整个位图
+                byte[] versionKey = bytes(RedisKeyUtil.getBlogLikersVersionKey(blogId));
+                byte[] current = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(versionKey));
+                byte[] snapshot;
+                long version;
+                synchronized (entry) {
+                    entry.snapshotVersion = Math.max(entry.snapshotVersion, current == null ? 0 : number(current));
+                    if (entry.version - entry.snapshotVersion < compactThreshold) {
+                        continue;
+                    }
+                    version = entry.version;
+                    snapshot = serialize(entry.bitmap);
+                }
+                Long saved = this.execute(LuaScriptConstant.BLOG_LIKERS_COMPACT_SCRIPT, blogId, Long.toString(version), snapshot);
+                synchronized (entry) {
+                    entry.snapshotVersion = Math.max(entry.snapshotVersion, saved);
+                }
+                compacted++;
+            } catch (RuntimeException e) {
+                log.warn("博文 {} 的点赞用户索引合并失败, 下次继续尝试", blogId, e);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * 把一篇博文的增量追加到日志, 序号连续时同时应用到本地副本(广播回来的同一批增量会被忽略)
+     */
+    private void append(Long blogId, List<Long> addedUserIds, List<Long> removedUserIds) {
+        long[] deltas = new long[addedUserIds.size() + removedUserIds.size()];
+        Object[] args = new Object[deltas.length + 2];
+        args[0] = ThumbConstant.BLOG_LIKERS_DELTA_CHANNEL;
+        args[1] = blogId.toString();
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = i < addedUserIds.size() ? addedUserIds.get(i) : -removedUserIds.get(i - addedUserIds.size());
+            args[i + 2] = Long.toString(deltas[i]);
+        }
+        if (deltas.length == 0) {
+            return;
+        }
+        Long seq = this.execute(LuaScriptConstant.BLOG_LIKERS_APPEND_SCRIPT, blogId, args);
+        if (seq == null || seq < 0) {
+            likers.invalidate(blogId); // 序号已经过期, 所有的键都已经不存在, 下次读取时从 MySQL 构建
+            return;
+        }
+        this.apply(blogId, seq - deltas.length, deltas);
+    }
+
+    /**
+     * 把序号 (from, from + deltas.length] 的增量应用到本地副本, 本地没有这篇博文时忽略
+     */
+    private void apply(Long blogId, long from, long[] deltas) {
+        long to = from + deltas.length;
+        likers.asMap().computeIfPresent(blogId, (id, entry) -> { // 与读取同一篇博文互斥, 读取期间到达的增量在读取完成之后再判断
+            synchronized (entry) {
+                if (entry.version >= to) {
+                    return entry; // 已经应用过(本实例追加的增量, 或者读取时已经包含)
+                }
+                if (entry.version != from) {
+                    log.debug("博文 {} 的点赞用户索引缺少序号 {} 到 {} 的增量, 丢弃后重新读取", blogId, entry.version, from);
+                    return null;
+                }
+                for (long delta : deltas) {
+                    applyDelta(entry.bitmap, delta);
+                }
+                entry.version = to;
+                return entry;
+            }
+        });
+    }
+
+    /**
+     * 读取 Redis 中的快照并重放之后的增量, 没有快照时从 MySQL 构建并保存为快照
+     */
+    @SuppressWarnings("unchecked")
+    private Likers load(Long blogId) {
+        for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+            List<Object> values = this.execute(LuaScriptConstant.BLOG_LIKERS_LOAD_SCRIPT, blogId);
+            byte[] snapshot = (byte[]) values.get(0);
+            if (snapshot.length > 0) {
+                Likers entry = new Likers(deserialize(snapshot), number(values.get(1)));
+                replay(entry, values.subList(3, values.size()));
+                return entry;
+            }
+
+            // 先读取最新的序号再查询 MySQL, 之后追加的增量都在日志中, 重放时以增量为准(增量是幂等的)
+            long seq = number(values.get(2));
+            Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+            List<Object> userIds = thumbMapper.selectObjs(new LambdaQueryWrapper<Thumb>()
+                    .select(Thumb::getUserId)
+                    .eq(Thumb::getBlogId, blogId));
+            for (Object userId : userIds) {
+                bitmap.addLong(((Number) userId).longValue());
+            }
+            bitmap.runOptimize();
+            List<Object> saved = this.execute(LuaScriptConstant.BLOG_LIKERS_SAVE_SCRIPT, blogId, Long.toString(seq), serialize(bitmap));
+            if (saved.isEmpty()) {
+                continue; // 其他实例已经先保存了快照, 它的快照和日志是一致的, 重新读取
+            }
+            Likers entry = new Likers(bitmap, seq);
+            replay(entry, saved.subList(1, saved.size()));
+            log.debug("从 MySQL 构建博文 {} 的点赞用户索引, 点赞用户 {} 个", blogId, bitmap.getLongCardinality());
+            return entry;
+        }
+        throw new IllegalStateException("博文 " + blogId + " 的点赞用户索引连续 " + MAX_LOAD_ATTEMPTS + " 次读取时快照被抢先保存");
+    }
+
+    /**
+     * 按原始字节执行点赞用户索引的脚本(EVALSHA, 脚本不存在时由 RedisTemplate 退回 EVAL), 第一个参数固定为过期秒数
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T execute(RedisScript<T> script, Long blogId, Object... args) {
+        Object[] values = new Object[args.length + 1];
+        values[0] = bytes(Long.toString(ttlSeconds));
+        for (int i = 0; i < args.length; i++) {
+            values[i + 1] = args[i] instanceof byte[] value ? value : bytes(args[i].toString());
+        }
+        return redisTemplate.execute(script, BYTES, (RedisSerializer<T>) (RedisSerializer<?>) BYTES, keys(blogId), values);
+    }
+
+    /**
+     * 一篇博文在 Redis 中的四个键: 快照, 快照的增量序号, 增量日志, 最新的增量序号
+     */
+    private static List<String> keys(Long blogId) {
+        return List.of(
+                RedisKeyUtil.getBlogLikersKey(blogId),
+                RedisKeyUtil.getBlogLikersVersionKey(blogId),
+                RedisKeyUtil.getBlogLikersLogKey(blogId),
+                RedisKeyUtil.getBlogLikersSeqKey(blogId)
+        );
+    }
+
+    /**
+     * 按顺序重放日志中序号大于本地副本的增量, 每一项为 "序号:userId"
+     */
+    private static void replay(Likers entry, List<Object> entries) {
+        for (Object item : entries) {
+            String[] parts = new String((byte[]) item, StandardCharsets.US_ASCII).split(":", 2);
+            long seq = Long.parseLong(parts[0]);
+            if (seq > entry.version) {
+                applyDelta(entry.bitmap, Long.parseLong(parts[1]));
+                entry.version = seq;
+            }
+        }
+    }
+
+    /**
+     * 应用一个增量, 正数为点赞, 负数为取消点赞
+     */
+    private static void applyDelta(Roaring64NavigableMap bitmap, long delta) {
+        if (delta > 0) {
+            bitmap.addLong(delta);
+        } else {
+            bitmap.removeLong(-delta);
+        }
+    }
+
+    /**
+     * 脚本返回的整数(整数回复为 Long, 字符串回复为十进制字节)
+     */
+    private static long number(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(new String((byte[]) value, StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] serialize(Roaring64NavigableMap bitmap) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE, bitmap.serializedSizeInBytes()));
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                bitmap.serializePortable(output);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Roaring64NavigableMap deserialize(byte[] bytes) {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            bitmap.deserializePortable(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+
+}
@@ -0,0 +1,153 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.LuaScriptConstant;
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 博文序号索引(blogId <-> 从 0 开始连续分配的序号), 供位图布局作为位偏移使用
+ * 博文 ID 是雪花算法生成的(约 1.9e18), 远超 Redis 位图 2^32 的偏移上限, 即使取模也会让每个用户的位图稀疏到没有意义, 因此:
+ * (1)分配: 博文第一次被点赞时先确认博文存在, 再由 Lua 脚本原子地分配下一个序号, 同时写入正反两个方向的哈希(ordinal:blog, ordinal:blog:reverse)
+ * (2)查询: 判断点赞情况、取消点赞时不分配序号, 没有序号的博文一定没有被点赞过, 因此序号的个数不会超过被点赞过的博文个数
+ * (3)缓存: 序号一经分配就不再改变, 两个方向都缓存在本地, 只有本地未命中的部分才访问 Redis
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+public class BlogOrdinalIndex {
+
+    /**
+     * 注入点赞键空间专用的 Redis 客户端(序号和博文 ID 都以十进制整数保存)
+     */
+    @Resource
+    private RedisTemplate<String, Long> thumbRedisTemplate;
+
+    /**
+     * 注入博文的三级缓存(分配序号前确认博文存在)
+     */
+    @Resource
+    private TieredCache<Long, Blog> blogCache;
+
+    /**
+     * 本地每个方向最多缓存的博文个数
+     */
+    @Value("${thumb.layout.ordinal-cache-size:100000}")
+    private long maximumSize;
+
+    /**
+     * blogId -> 序号
+     */
+    private Cache<Long, Long> ordinals;
+
+    /**
+     * 序号 -> blogId
+     */
+    private Cache<Long, Long> blogIds;
+
+    /**
+     * 创建本地缓存
+     */
+    @PostConstruct
+    public void init() {
+        this.ordinals = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.blogIds = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * 批量获取点赞的博文的序号, 与 blogIdList 一一对应, 没有序号的博文逐个确认存在之后再分配, 不存在的博文为 null(不分配, 也不影响其他博文)
+     */
+    public List<Long> ordinals(List<Long> blogIdList) {
+        List<Long> found = this.find(blogIdList);
+        if (found.stream().noneMatch(Objects::isNull)) {
+            return found;
+        }
+        List<Long> existing = new ArrayList<>();
+        for (int i = 0; i < blogIdList.size(); i++) {
+            if (found.get(i) == null && blogCache.get(blogIdList.get(i)) != null) {
+                existing.add(blogIdList.get(i));
+            }
+        }
+        Map<Long, Long> assigned = new HashMap<>();
+        List<Long> assignedOrdinals = existing.isEmpty() ? List.of() : this.assign(existing);
+        for (int i = 0; i < existing.size(); i++) {
+            assigned.put(existing.get(i), assignedOrdinals.get(i));
+        }
+        List<Long> result = new ArrayList<>(blogIdList.size());
+        for (int i = 0; i < blogIdList.size(); i++) {
+            result.add(found.get(i) != null ? found.get(i) : assigned.get(blogIdList.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取博文的序号, 没有序号时直接分配(调用方保证博文存在), 与 blogIds 一一对应
+     */
+    public List<Long> assign(List<Long> blogIdList) {
+        Map<Long, Long> found = new HashMap<>(ordinals.getAllPresent(blogIdList));
+        List<Long> missing = blogIdList.stream().filter(blogId -> !found.containsKey(blogId)).distinct().toList();
+        if (!missing.isEmpty()) {
+            List<?> results = thumbRedisTemplate.execute(
+                    LuaScriptConstant.BLOG_ORDINAL_SCRIPT,
+                    List.of(ThumbConstant.BLOG_ORDINAL_KEY, ThumbConstant.BLOG_ORDINAL_REVERSE_KEY, ThumbConstant.BLOG_ORDINAL_SEQ_KEY),
+                    missing.toArray()
+            );
+            for (int i = 0; i < missing.size(); i++) {
+                this.remember(missing.get(i), ((Number) results.get(i)).longValue());
+                found.put(missing.get(i), ((Number) results.get(i)).longValue());
+            }
+        }
+        return blogIdList.stream().map(found::get).toList();
+    }
+
+    /**
+     * 批量查询博文的序号(不分配), 没有序号的博文为 null, 与 blogIds 一一对应
+     */
+    public List<Long> find(List<Long> blogIdList) {
+        Map<Long, Long> found = new HashMap<>(ordinals.getAllPresent(blogIdList));
+        List<Long> missing = blogIdList.stream().filter(blogId -> !found.containsKey(blogId)).distinct().toList();
+        if (!missing.isEmpty()) {
+            List<Long> values = thumbRedisTemplate.<String, Long>opsForHash().multiGet(ThumbConstant.BLOG_ORDINAL_KEY, missing.stream().map(String::valueOf).toList());
+            for (int i = 0; i < missing.size(); i++) {
+                if (values.get(i) != null) {
+                    this.remember(missing.get(i), values.get(i));
+                    found.put(missing.get(i), values.get(i));
+                }
+            }
+        }
+        return blogIdList.stream().map(found::get).toList();
+    }
+
+    /**
+     * 批量把序号转换为博文 ID, 与 ordinalList 一一对应
+     */
+    public List<Long> blogIds(List<Long> ordinalList) {
+        Map<Long, Long> found = new HashMap<>(blogIds.getAllPresent(ordinalList));
+        List<Long> missing = ordinalList.stream().filter(ordinal -> !found.containsKey(ordinal)).distinct().toList();
+        if (!missing.isEmpty()) {
+            List<Long> values = thumbRedisTemplate.<String, Long>opsForHash().multiGet(ThumbConstant.BLOG_ORDINAL_REVERSE_KEY, missing.stream().map(String::valueOf).toList());
+            for (int i = 0; i < missing.size(); i++) {
+                if (values.get(i) == null) {
+                    throw new IllegalStateException("博文序号 " + missing.get(i) + " 没有对应的博文");
+                }
+                this.remember(values.get(i), missing.get(i));
+                found.put(missing.get(i), values.get(i));
+            }
+        }
+        return ordinalList.stream().map(found::get).toList();
+    }
+
+    private void remember(long blogId, long ordinal) {
+        ordinals.put(blogId, ordinal);
+        blogIds.put(ordinal, blogId);
+    }
+
+}
@@ -0,0 +1,97 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * (userId, blogId) 二元组的布隆过滤器
+ * 位数组使用 AtomicLongArray, 写入时对单个 long 进行原子按位或, 读写都不需要加锁:
+ * (1)位数: m = -n * ln(p) / (ln2)^2, 向上取整到 64 的倍数
+ * (2)哈希: 两个 64 位哈希做双重哈希 h1 + i * h2, 得到 k = m / n * ln2 个位置
+ * (3)合并: 位数相同的过滤器可以按位或合并, 结果包含两者的全部元素
+ * 只支持添加不支持删除, 已经取消的点赞只能在重建时被清除
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+final class BloomFilter {
+
+    /**
+     * 位数组
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * 位数
+     */
+    private final long bitSize;
+
+    /**
+     * 每个元素占用的位数
+     */
+    private final int hashCount;
+
+    /**
+     * 初始化一个布隆过滤器
+     *
+     * @param expectedInsertions 预期元素个数
+     * @param fpp                预期误判率
+     */
+    BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * 添加一个元素
+     */
+    void put(long userId, long blogId) {
+        long h1 = KeyHash.mix64(KeyHash.mix64(userId) ^ blogId);
+        long h2 = KeyHash.mix64(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits.get(word) & mask) == 0) { // 已经置位时不写入, 避免热点元素反复写同一个缓存行
+                bits.getAndAccumulate(word, mask, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * 元素可能存在时返回 true, 返回 false 时元素一定不存在
+     */
+    boolean mightContain(long userId, long blogId) {
+        long h1 = KeyHash.mix64(KeyHash.mix64(userId) ^ blogId);
+        long h2 = KeyHash.mix64(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把另一个位数相同的过滤器中的元素合并到本过滤器
+     */
+    void or(BloomFilter other) {
+        for (int word = 0; word < bits.length(); word++) {
+            long value = other.bits.get(word);
+            if (value != 0) {
+                bits.getAndAccumulate(word, value, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * 位数组占用的字节数
+     */
+    long sizeInBytes() {
+        return bitSize >>> 3;
+    }
+
+}
@@ -1,10 +1,26 @@
 package cn.com.edtechhub.workmassivelikes.cache;
 
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.enums.TopKTypeEnum;
+import cn.com.edtechhub.workmassivelikes.mapper.BlogMapper;
+import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
+import cn.com.edtechhub.workmassivelikes.request.BlogSearchRequest;
+import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -13,16 +29,192 @@ import java.util.concurrent.TimeUnit;
  * @author <a href="https://github.com/limou3434">limou3434</a>
  */
 @Component
+@Slf4j
 public class CacheManager {
 
+    /**
+     * 热点探测所使用的 TopK 实现类型(取值参考 TopKTypeEnum)
+     */
+    @Value("${cache.hot-key.type:heavy-keeper}")
+    private String hotKeyType;
+
+    /**
+     * 分条带实现的条带数量(小于等于 0 时使用 CPU 核数)
+     */
+    @Value("${cache.hot-key.stripes:0}")
+    private int hotKeyStripes;
+
+    /**
+     * 分条带实现的共享视图最多允许滞后的毫秒数
+     */
+    @Value("${cache.hot-key.staleness-millis:1000}")
+    private long hotKeyStalenessMillis;
+
+    /**
+     * 滑动窗口实现的窗口个数
+     */
+    @Value("${cache.hot-key.windows:4}")
+    private int hotKeyWindows;
+
+    /**
+     * 滑动窗口实现的每个窗口的毫秒数
+     */
+    @Value("${cache.hot-key.window-millis:5000}")
+    private long hotKeyWindowMillis;
+
+    /**
+     * Space-Saving 实现的计数器数量
+     */
+    @Value("${cache.hot-key.counters:1000}")
+    private int hotKeyCounters;
+
+    /**
+     * 集群热点快照的同步周期毫秒数
+     */
+    @Value("${cache.hot-key.cluster.sync-millis:1000}")
+    private long clusterSyncMillis;
+
+    /**
+     * 本实例在集群中的标识, 为空时使用 "进程号@主机名"
+     */
+    @Value("${cache.hot-key.cluster.instance-id:}")
+    private String clusterInstanceId;
+
+    /**
+     * 博文三级缓存的本地最大个数
+     */
+    @Value("${cache.blog-cache.maximum-size:1000}")
+    private long blogCacheMaximumSize;
+
+    /**
+     * 博文三级缓存的本地过期秒数
+     */
+    @Value("${cache.blog-cache.local-ttl-seconds:5}")
+    private long blogCacheLocalTtlSeconds;
+
+    /**
+     * 博文三级缓存的 Redis 过期秒数
+     */
+    @Value("${cache.blog-cache.redis-ttl-seconds:5}")
+    private long blogCacheRedisTtlSeconds;
+
+    /**
+     * 博文三级缓存的空值过期秒数, 为 0 时不缓存空值
+     */
+    @Value("${cache.blog-cache.negative-ttl-seconds:5}")
+    private long blogCacheNegativeTtlSeconds;
+
+    /**
+     * 请求合并时等待其他线程加载的最长毫秒数
+     */
+    @Value("${cache.single-flight.timeout-millis:3000}")
+    private long singleFlightTimeoutMillis;
+
+    /**
+     * 注入 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注入 Redis 消息监听容器
+     */
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 注入博文映射
+     */
+    @Resource
+    private BlogMapper blogMapper;
+
+    /**
+     * 热点用户探测器, 使用 userId 作为 key
+     */
     @Bean
-    public HeavyKeeper heavyKeeper() {
-        return new HeavyKeeper(100, 100000, 5, 0.92, 10);
+    public TopK hotKeyDetector() {
+        return this.newTopK();
     }
 
+    /**
+     * 热点博文探测器, 使用 blogId 作为 key, 由点赞/取消点赞和博文读取共同驱动
+     */
+    @Bean
+    public TopK hotBlogDetector() {
+        return this.newTopK();
+    }
+
+    /**
+     * 集群维度的热点用户集合
+     */
+    @Bean
+    public ClusterHotKeys clusterHotUsers(@Qualifier("hotKeyDetector") TopK hotKeyDetector) {
+        return this.newClusterHotKeys("user", hotKeyDetector);
+    }
+
+    /**
+     * 集群维度的热点博文集合
+     */
+    @Bean
+    public ClusterHotKeys clusterHotBlogs(@Qualifier("hotBlogDetector") TopK hotBlogDetector) {
+        return this.newClusterHotKeys("blog", hotBlogDetector);
+    }
+
+    /**
+     * 热点用户的本地缓存, 保存 userId -> 已经点赞的 blogId 集合(LongHashSet)
+     */
     @Bean
     public Cache<String, Object> localCache() {
         return Caffeine.newBuilder().maximumSize(1000).expireAfterWrite(5, TimeUnit.MINUTES).build();
     }
 
+    /**
+     * 博文的三级缓存(本地 -> Redis -> MySQL), 点赞数在数据库中本身就是延迟同步的, 因此每一级都只缓存很短的时间
+     * 不配置写入: thumb_count 由 BlogMapper.xml 中的 thumb_count + N 批量累加, 按整行 updateById 写入缓存中的博文会用旧的点赞数覆盖累加的结果,
+     * 修改博文时直接更新数据库, 再调用 invalidate()/invalidateAllAfterCommit() 删除各级副本
+     */
+    @Bean
+    public TieredCache<Long, Blog> blogCache() {
+        return TieredCache.<Long, Blog>builder("blog")
+                .local(blogCacheMaximumSize, Duration.ofSeconds(blogCacheLocalTtlSeconds))
+                .redis(redisTemplate, RedisKeyUtil::getBlogCacheKey, Duration.ofSeconds(blogCacheRedisTtlSeconds))
+                .negativeTtl(Duration.ofSeconds(blogCacheNegativeTtlSeconds))
+                .loader(blogMapper::selectById)
+                .broadcast(redisTemplate, redisMessageListenerContainer, ThumbConstant.BLOG_CACHE_INVALIDATE_CHANNEL, Long::valueOf)
+                .singleFlight(singleFlightTimeoutMillis)
+                .build();
+    }
+
+    /**
+     * 博文分页查询的请求合并, 完全相同的查询条件同时只查询一次数据库
+     */
+    @Bean
+    public SingleFlight<BlogSearchRequest, List<Blog>> blogSearchFlight() {
+        return new SingleFlight<>(singleFlightTimeoutMillis);
+    }
+
+    /**
+     * 创建集群热点集合, 快照的有效期为 3 个同步周期, 允许偶尔错过一次同步
+     */
+    private ClusterHotKeys newClusterHotKeys(String detector, TopK local) {
+        String instanceId = clusterInstanceId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : clusterInstanceId;
+        return new ClusterHotKeys(RedisKeyUtil.getHotKeySnapshotKey(detector), instanceId, local, redisTemplate, 100, 10, clusterSyncMillis * 3);
+    }
+
+    /**
+     * 根据配置创建 TopK 实例
+     */
+    private TopK newTopK() {
+        TopKTypeEnum type = Objects.requireNonNull(TopKTypeEnum.getEnumByValue(hotKeyType), "未知的 TopK 实现类型: " + hotKeyType);
+        log.debug("热点探测使用的 TopK 实现类型为 {}", type.getValue());
+        return switch (type) {
+            case HEAVY_KEEPER -> new HeavyKeeper(100, 100000, 5, 0.92, 10);
+            case PACKED_HEAVY_KEEPER -> new PackedHeavyKeeper(100, 100000, 5, 0.92, 10);
+            case STRIPED_HEAVY_KEEPER -> new StripedTopK(100, 100000, 5, 0.92, 10, hotKeyStripes, hotKeyStalenessMillis);
+            case WINDOWED_HEAVY_KEEPER -> new WindowedTopK(100, 100000, 5, 0.92, 10, hotKeyWindows, hotKeyWindowMillis);
+            case SPACE_SAVING -> new SpaceSavingTopK(100, hotKeyCounters, 10);
+            case COUNT_MIN_HEAP -> new CountMinTopK(100, 100000, 5, 10);
+        };
+    }
+
 }
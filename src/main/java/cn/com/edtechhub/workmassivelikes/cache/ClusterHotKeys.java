@@ -0,0 +1,171 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群维度的热点 key 集合
+ * 每个实例各自运行一个 TopK, 负载均衡之后同一个 key 的流量被平均分散到每个实例上, 10 个实例就需要 10 倍的流量才能被识别为热点, 并且每个实例各自判断
+ * 因此每个实例定期把本地 TopK 的快照发布到 Redis 的同一个 hash 中(field 为实例标识), 同时读取所有实例的快照累加合并, 得到集群维度的热点集合:
+ * (1)发布: 快照是 "发布时间;key:count,key:count,..." 的紧凑字符串, 最多 k 个元素
+ * (2)合并: 忽略超过 ttlMillis 没有更新的快照(并顺手删除), 把其余快照中同一个 key 的计数累加, 取计数最大的前 k 个
+ * (3)判断: 合并结果是一个不可变的 HotKeySet, 读取没有任何锁, 热点判断最多滞后一个同步周期
+ * (4)门槛: 本地 TopK 只发布达到本地最小计数的元素, 每个实例都只有 1/N 流量的 key 在本地永远达不到门槛, 合并时也就无从累加,
+ *     因此与 StripedTopK 按条带数降低每个条带的门槛一样, 每次合并之后按存活的实例数 N 把本地的门槛降低为 1/N, 合并后的计数仍然按 minCount 判断
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Slf4j
+public class ClusterHotKeys {
+
+    /**
+     * 快照存放的 Redis hash 键名
+     */
+    private final String redisKey;
+
+    /**
+     * 本实例的标识
+     */
+    private final String instanceId;
+
+    /**
+     * 本实例的 TopK
+     */
+    private final TopK local;
+
+    /**
+     * Redis 客户端
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 合并后保留的热点个数
+     */
+    private final int k;
+
+    /**
+     * 合并后计数小于此值的元素不认为是集群热点
+     */
+    private final int minCount;
+
+    /**
+     * 快照的有效期, 超过这个时间没有更新的实例认为已经下线
+     */
+    private final long ttlMillis;
+
+    /**
+     * 合并后的集群热点集合(不可变, 整体替换)
+     */
+    private volatile HotKeySet hotKeys = HotKeySet.EMPTY;
+
+    /**
+     * 合并后按计数降序排列的集群热点列表(不可变, 整体替换)
+     */
+    private volatile List<Item> hotList = List.of();
+
+    public ClusterHotKeys(String redisKey, String instanceId, TopK local, RedisTemplate<String, Object> redisTemplate, int k, int minCount, long ttlMillis) {
+        this.redisKey = redisKey;
+        this.instanceId = instanceId;
+        this.local = local;
+        this.redisTemplate = redisTemplate;
+        this.k = k;
+        this.minCount = minCount;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 是否为集群热点
+     */
+    public boolean contains(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * 是否为集群热点(long 类型的 key, 不分配任何对象)
+     */
+    public boolean contains(long key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * 按计数降序排列的集群热点列表
+     */
+    public List<Item> list() {
+        return hotList;
+    }
+
+    /**
+     * 发布本实例的快照, 然后合并所有实例的快照
+     */
+    public void sync() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForHash().put(redisKey, instanceId, encode(now, local.list()));
+        redisTemplate.expire(redisKey, ttlMillis * 2, TimeUnit.MILLISECONDS); // 所有实例都下线后整个 hash 自动过期
+
+        Map<Object, Object> snapshots = redisTemplate.opsForHash().entries(redisKey);
+        Map<String, Long> merged = new HashMap<>();
+        List<Object> expired = new ArrayList<>();
+        snapshots.forEach((instance, snapshot) -> {
+            if (!decode(snapshot.toString(), now - ttlMillis, merged)) {
+                expired.add(instance);
+            }
+        });
+        if (!expired.isEmpty()) {
+            redisTemplate.opsForHash().delete(redisKey, expired.toArray());
+            log.debug("移除过期的热点快照: {}", expired);
+        }
+        local.setMinCountDivisor(Math.max(1, snapshots.size() - expired.size())); // 存活的实例数(包括刚刚发布的本实例)
+
+        List<Item> candidates = new ArrayList<>(merged.size());
+        merged.forEach((key, count) -> {
+            if (count >= minCount) {
+                candidates.add(new Item(key, (int) Math.min(count, Integer.MAX_VALUE)));
+            }
+        });
+        candidates.sort((a, b) -> Integer.compare(b.count(), a.count()));
+        List<Item> top = List.copyOf(candidates.subList(0, Math.min(k, candidates.size())));
+
+        hotKeys = HotKeySet.of(top);
+        hotList = top;
+    }
+
+    /**
+     * 把快照编码为 "发布时间;key:count,key:count,..."
+     */
+    static String encode(long publishMillis, List<Item> items) {
+        StringBuilder builder = new StringBuilder(items.size() * 16 + 16);
+        builder.append(publishMillis).append(';');
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(items.get(i).key()).append(':').append(items.get(i).count());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解码快照并把计数累加到 merged 中, 快照的发布时间早于 notBefore 时不累加并返回 false
+     */
+    static boolean decode(String snapshot, long notBefore, Map<String, Long> merged) {
+        int separator = snapshot.indexOf(';');
+        if (separator < 0 || Long.parseLong(snapshot.substring(0, separator)) < notBefore) {
+            return false;
+        }
+        int start = separator + 1;
+        while (start < snapshot.length()) {
+            int end = snapshot.indexOf(',', start);
+            end = end < 0 ? snapshot.length() : end;
+            int colon = snapshot.lastIndexOf(':', end - 1);
+            if (colon > start) {
+                merged.merge(snapshot.substring(start, colon), Long.parseLong(snapshot.substring(colon + 1, end)), Long::sum);
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+}
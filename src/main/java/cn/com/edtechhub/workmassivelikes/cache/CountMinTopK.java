@@ -0,0 +1,206 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TopK 算法实现(Count-Min Sketch + 最小堆)
+ * 与 HeavyKeeper 的区别:
+ * (1)桶中不保存指纹, 只保存计数, 冲突时不衰减而是直接累加, 因此估计值只会高估不会低估
+ * (2)元素的估计值为所有层中对应计数的最小值, 层数越多高估越少
+ * (3)每个计数只是一个 int, 通过 VarHandle 原子累加, 没有任何 CAS 重试和随机数
+ * 同样宽度下内存是 PackedHeavyKeeper 的一半, 但冷数据会持续抬高计数, 更依赖定时 fading() 衰减
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class CountMinTopK implements TopK {
+
+    /**
+     * 用于对 int[] 中的单个元素进行 volatile 读和原子累加的句柄
+     */
+    private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * 当前 TopK 数据结构中的总增量次数
+     */
+    private final LongAdder total;
+
+    /**
+     * 计数表, 按层展开的一维数组, 第 i 层第 j 个计数位于 i * width + j
+     */
+    private final int[] counters;
+
+    /**
+     * 每一层的哈希种子
+     */
+    private final long[] seeds;
+
+    /**
+     * 代表计数表中的层数
+     */
+    private final int depth;
+
+    /**
+     * 代表每层中计数的数量
+     */
+    private final int width;
+
+    /**
+     * 带索引的最小堆, 用于存储 TopK 数据结构中的元素
+     */
+    private final IndexedMinHeap minHeap;
+
+    /**
+     * 被挤出的元素流
+     */
+    private final ExpelledStream expelledStream;
+
+    /**
+     * 最小计数, 当元素的估计值小于此值时, 不会进入 TopK
+     */
+    private volatile int minCount;
+
+    /**
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
+     */
+    private final int baseMinCount;
+
+    /**
+     * 初始化一个 CountMinTopK 实例
+     */
+    public CountMinTopK(int k, int width, int depth, int minCount) {
+        this.width = width;
+        this.depth = depth;
+        this.minCount = minCount;
+        this.baseMinCount = minCount;
+        this.minHeap = new IndexedMinHeap(k);
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
+        this.total = new LongAdder();
+        this.counters = new int[depth * width];
+        this.seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = KeyHash.mix64(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    @Override
+    public AddResult add(String key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        int estimate = increase(keyHash, increment);
+
+        // 如果本元素的估计值小于最小计数, 则表示此元素不会进入 TopK, 直接返回
+        if (estimate < minCount) {
+            return new AddResult(null, false, null);
+        }
+
+        synchronized (minHeap) {
+            if (minHeap.update(keyHash, key, estimate)) {
+                return new AddResult(null, true, key);
+            }
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, key, estimate);
+                return new AddResult(null, true, key);
+            }
+            if (estimate >= minHeap.minCount()) {
+                Item expelled = minHeap.replaceMin(keyHash, key, estimate);
+                expelledStream.offer(expelled);
+                return new AddResult(expelled.key(), true, key);
+            }
+            return new AddResult(null, false, key);
+        }
+    }
+
+    @Override
+    public boolean add(long key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        int estimate = increase(keyHash, increment);
+        if (estimate < minCount) {
+            return false;
+        }
+        synchronized (minHeap) {
+            // 只有 key 新进入堆时才需要分配字符串和节点
+            if (minHeap.update(keyHash, key, estimate)) {
+                return true;
+            }
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, Long.toString(key), estimate);
+                return true;
+            }
+            if (estimate >= minHeap.minCount()) {
+                expelledStream.offer(minHeap.replaceMin(keyHash, Long.toString(key), estimate));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<Item> list() {
+        Item[] snapshot;
+        synchronized (minHeap) {
+            snapshot = minHeap.snapshot();
+        }
+        return IndexedMinHeap.sortDescending(snapshot);
+    }
+
+    @Override
+    public ExpelledStream expelled() {
+        return expelledStream;
+    }
+
+    @Override
+    public void fading() {
+        // 逐个计数 CAS 减半
+        for (int index = 0; index < counters.length; index++) {
+            int count;
+            do {
+                count = (int) COUNTERS.getVolatile(counters, index);
+            } while (count != 0 && !COUNTERS.compareAndSet(counters, index, count, count >> 1));
+        }
+
+        synchronized (minHeap) {
+            minHeap.halve();
+        }
+
+        long current = total.sumThenReset();
+        total.add(current >> 1);
+    }
+
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+    }
+
+    @Override
+    public long total() {
+        return total.sum();
+    }
+
+    /**
+     * 在每一层累加计数, 返回累加后所有层中的最小值作为估计值
+     */
+    private int increase(long keyHash, int increment) {
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = i * width + bucketIndex(keyHash, seeds[i]);
+            int count = (int) COUNTERS.getAndAdd(counters, index, increment) + increment;
+            if (count < 0) {
+                count = Integer.MAX_VALUE; // 溢出时按最大值处理, 等待 fading() 衰减
+            }
+            estimate = Math.min(estimate, count);
+        }
+        total.add(increment);
+        return estimate;
+    }
+
+    /**
+     * 根据 key 的哈希值和层种子计算计数编号(使用乘法映射代替取模)
+     */
+    private int bucketIndex(long keyHash, long seed) {
+        long mixed = KeyHash.mix64(keyHash ^ seed);
+        return (int) (((mixed >>> 32) * width) >>> 32);
+    }
+
+}
@@ -0,0 +1,120 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 被挤出 TopK 的元素流
+ * 原来使用无界的 LinkedBlockingQueue 存放被挤出的元素, 但没有任何地方消费它, 生产环境中会一直增长直到耗尽堆内存
+ * 这里改为一个固定容量的环形缓冲区:
+ * (1)写入: offer 永远不会阻塞, 缓冲区满时覆盖最旧的元素, 并记录丢弃次数
+ * (2)消费: 通过 addListener 注册监听器, 由调用方(比如定时任务)周期性地调用 drain 把缓冲区中的元素依次分发给所有监听器
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class ExpelledStream {
+
+    /**
+     * 默认容量
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * 环形缓冲区
+     */
+    private final Item[] buffer;
+
+    /**
+     * 下一个读取位置(单调递增, 取模后得到数组下标)
+     */
+    private long head;
+
+    /**
+     * 下一个写入位置(单调递增, 取模后得到数组下标)
+     */
+    private long tail;
+
+    /**
+     * 由于缓冲区已满而被覆盖丢弃的元素总数
+     */
+    private long dropped;
+
+    /**
+     * 监听器列表
+     */
+    private final List<Consumer<Item>> listeners = new CopyOnWriteArrayList<>();
+
+    public ExpelledStream(int capacity) {
+        this.buffer = new Item[capacity];
+    }
+
+    /**
+     * 写入一个被挤出的元素, 缓冲区满时覆盖最旧的元素
+     */
+    public synchronized void offer(Item item) {
+        if (tail - head == buffer.length) {
+            head++;
+            dropped++;
+        }
+        buffer[(int) (tail++ % buffer.length)] = item;
+    }
+
+    /**
+     * 注册一个监听器, 在 drain 时被调用
+     */
+    public void addListener(Consumer<Item> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 取出缓冲区中当前所有的元素并依次分发给所有监听器, 返回本次分发的元素个数(监听器在锁外执行)
+     */
+    public int drain() {
+        Item[] items;
+        synchronized (this) {
+            int size = (int) (tail - head);
+            items = new Item[size];
+            for (int i = 0; i < size; i++) {
+                int index = (int) (head++ % buffer.length);
+                items[i] = buffer[index];
+                buffer[index] = null;
+            }
+        }
+        for (Item item : items) {
+            for (Consumer<Item> listener : listeners) {
+                listener.accept(item);
+            }
+        }
+        return items.length;
+    }
+
+    /**
+     * 丢弃缓冲区中当前所有的元素(不通知监听器)
+     */
+    public synchronized void clear() {
+        while (head < tail) {
+            buffer[(int) (head++ % buffer.length)] = null;
+        }
+    }
+
+    /**
+     * 缓冲区中尚未被分发的元素个数
+     */
+    public synchronized int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * 由于缓冲区已满而被丢弃的元素总数
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ExpelledStream(size=" + (tail - head) + ", dropped=" + dropped + ")";
+    }
+
+}
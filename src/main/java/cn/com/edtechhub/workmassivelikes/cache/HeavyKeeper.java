@@ -3,8 +3,6 @@ package cn.com.edtechhub.workmassivelikes.cache;
 import cn.hutool.core.util.HashUtil;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * TopK 算法实现(参考 https://github.com/go-kratos/aegis/tree/main/topk 实现)
@@ -44,24 +42,24 @@ public class HeavyKeeper implements TopK {
     private static final int LOOKUP_TABLE_SIZE = 256;
 
     /**
-     * 最小堆, 用于存储 TopK 数据结构中的元素
+     * 带索引的最小堆, 用于存储 TopK 数据结构中的元素
      */
-    private final PriorityQueue<Node> minHeap;
+    private final IndexedMinHeap minHeap;
 
     /**
-     * 被挤出的元素阻塞队列
+     * 被挤出的元素流
      */
-    private final BlockingQueue<Item> expelledQueue;
+    private final ExpelledStream expelledStream;
 
     /**
-     * TopK 的 k 值
+     * 最小计数, 当元素的计数小于此值时, 不会进入 TopK
      */
-    private final int k;
+    private volatile int minCount;
 
     /**
-     * 最小计数, 当元素的计数小于此值时, 不会进入 TopK
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
      */
-    private final int minCount;
+    private final int baseMinCount;
 
     /**
      * 随机数生成器
@@ -72,12 +70,12 @@ public class HeavyKeeper implements TopK {
      * 初始化一个 HeavyKeeper 实例
      */
     public HeavyKeeper(int k, int width, int depth, double decay, int minCount) {
-        this.k = k;
         this.width = width;
         this.depth = depth;
         this.minCount = minCount;
-        this.minHeap = new PriorityQueue<>(Comparator.comparingInt(n -> n.count));
-        this.expelledQueue = new LinkedBlockingQueue<>();
+        this.baseMinCount = minCount;
+        this.minHeap = new IndexedMinHeap(k);
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
         this.random = new Random();
         this.total = 0;
 
@@ -157,60 +155,43 @@ public class HeavyKeeper implements TopK {
         }
 
         // 如果本元素的最大计数大于或等于最小计数, 则表示此元素会进入 TopK, 进行相应的操作
+        long keyHash = KeyHash.hash(key); // 最小堆的索引表使用的哈希值
         synchronized (minHeap) {
-            boolean isHot = false; // 用于标记当前元素是否进入 TopK
-            String expelled = null; // 用于记录被挤出的元素
-
-            // 检查当前 key 是否已经在最小堆里面
-            Optional<Node> existing = minHeap
-                    .stream()
-                    .filter(n -> n.key.equals(key))
-                    .findFirst();
-
-            // 如果当前 key 已经在最小堆里面, 则将其移出最小堆然后更新计数重新添加到最小堆中
-            if (existing.isPresent()) {
-                minHeap.remove(existing.get());
-                minHeap.add(new Node(key, maxCount));
-                isHot = true;
+            // 如果当前 key 已经在最小堆里面, 则原地更新计数即可
+            if (minHeap.update(keyHash, key, maxCount)) {
+                return new AddResult(null, true, key);
             }
-            // 如果当前 key 不在最小堆里面
-            else {
-                if (
-                        minHeap.size() < k || // 如果最小堆未满
-                                maxCount >= Objects.requireNonNull(minHeap.peek()).count // 或者当前元素的计数大于等于最小堆中最小的元素的计数
-                ) { // 则将当前元素添加到最小堆中
-                    Node newNode = new Node(key, maxCount);
-                    // 如果是通过第二个条件进来的, 并且最小堆已经满了, 则将最小堆中的最小元素移出最小堆, 并将其添加到被挤出的元素阻塞队列中
-                    if (minHeap.size() >= k) {
-                        expelled = minHeap.poll().key; // 从小顶堆里删除弹出一个最小元素, 这里还拿到它的 key
-                        expelledQueue.offer(new Item(expelled, maxCount)); // 把被踢出去的元素用当前最大计数包装成一个新 Item 放进另一个队列里
-                    }
-                    minHeap.add(newNode);
-                    isHot = true;
-                }
-                // 如果最小堆已经满了, 并且当前元素的计数小于最小堆中最小的元素的计数, 则不会进入 TopK, 直接返回
+
+            // 如果最小堆未满, 则将当前元素添加到最小堆中
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, key, maxCount);
+                return new AddResult(null, true, key);
+            }
+
+            // 如果最小堆已经满了, 并且当前元素的计数大于等于最小堆中最小的元素的计数, 则挤出堆顶元素, 并将其添加到被挤出的元素流中
+            if (maxCount >= minHeap.minCount()) {
+                Item expelled = minHeap.replaceMin(keyHash, key, maxCount);
+                expelledStream.offer(expelled);
+                return new AddResult(expelled.key(), true, key);
             }
 
-            // 最终返回 AddResult 对象, 包含被挤出的元素, 当前元素是否进入 TopK, 以及当前元素的 key
-            return new AddResult(expelled, isHot, key);
+            // 如果最小堆已经满了, 并且当前元素的计数小于最小堆中最小的元素的计数, 则不会进入 TopK, 直接返回
+            return new AddResult(null, false, key);
         }
     }
 
     @Override
     public List<Item> list() {
+        Item[] snapshot;
         synchronized (minHeap) {
-            List<Item> result = new ArrayList<>(minHeap.size());
-            for (Node node : minHeap) {
-                result.add(new Item(node.key, node.count));
-            }
-            result.sort((a, b) -> Integer.compare(b.count(), a.count()));
-            return result;
+            snapshot = minHeap.snapshot();
         }
+        return IndexedMinHeap.sortDescending(snapshot); // 排序放在锁外进行
     }
 
     @Override
-    public BlockingQueue<Item> expelled() {
-        return expelledQueue;
+    public ExpelledStream expelled() {
+        return expelledStream;
     }
 
     @Override
@@ -224,20 +205,20 @@ public class HeavyKeeper implements TopK {
             }
         }
 
-        // 对最小堆进行衰减
+        // 对最小堆进行衰减(原地减半, 不需要重建)
         synchronized (minHeap) {
-            PriorityQueue<Node> newHeap = new PriorityQueue<>(Comparator.comparingInt(n -> n.count));
-            for (Node node : minHeap) {
-                newHeap.add(new Node(node.key, node.count >> 1));
-            }
-            minHeap.clear(); // 清空最小堆
-            minHeap.addAll(newHeap); // 将新的最小堆设置到最小堆中
+            minHeap.halve();
         }
 
         // 对总流量进行衰减
         total = total >> 1;
     }
 
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+    }
+
     @Override
     public long total() {
         return total;
@@ -0,0 +1,107 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 不可变的热点 key 集合
+ * 按 key 的哈希值升序存放, 查找时先二分哈希值再比较 key 本身, 因此既可以用 String 也可以用 long 查找, 查找过程不分配任何对象
+ * 适合作为 "定期整体替换, 随时无锁读取" 的共享视图
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public final class HotKeySet {
+
+    /**
+     * 空集合
+     */
+    public static final HotKeySet EMPTY = new HotKeySet(new long[0], new String[0]);
+
+    /**
+     * 升序排列的哈希值
+     */
+    private final long[] hashes;
+
+    /**
+     * 与 hashes 一一对应的 key
+     */
+    private final String[] keys;
+
+    private HotKeySet(long[] hashes, String[] keys) {
+        this.hashes = hashes;
+        this.keys = keys;
+    }
+
+    /**
+     * 由元素列表构造集合
+     */
+    public static HotKeySet of(List<Item> items) {
+        long[] hashes = new long[items.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = KeyHash.hash(items.get(i).key());
+        }
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        long[] sortedHashes = new long[order.length];
+        String[] sortedKeys = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedHashes[i] = hashes[order[i]];
+            sortedKeys[i] = items.get(order[i]).key();
+        }
+        return new HotKeySet(sortedHashes, sortedKeys);
+    }
+
+    /**
+     * 是否包含 key
+     */
+    public boolean contains(String key) {
+        long keyHash = KeyHash.hash(key);
+        for (int i = first(keyHash); i >= 0 && i < hashes.length && hashes[i] == keyHash; i++) {
+            if (keys[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否包含 long 类型的 key, 与 contains(String.valueOf(key)) 等价
+     */
+    public boolean contains(long key) {
+        long keyHash = KeyHash.hash(key);
+        for (int i = first(keyHash); i >= 0 && i < hashes.length && hashes[i] == keyHash; i++) {
+            if (KeyHash.equalsDecimal(keys[i], key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 集合大小
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * 第一个哈希值等于 keyHash 的下标, 不存在时返回 -1
+     */
+    private int first(long keyHash) {
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashes[mid] < keyHash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < hashes.length && hashes[low] == keyHash ? low : -1;
+    }
+
+}
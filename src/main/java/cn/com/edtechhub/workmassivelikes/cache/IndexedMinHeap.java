@@ -0,0 +1,319 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 带索引的最小堆, 用于存储 TopK 数据结构中的元素
+ * 堆本身是一个 Node 数组, 另外维护一张以 key 哈希值定位的开放寻址索引表, Node 中记录自己在堆数组中的下标, 因此:
+ * (1)判断 key 是否在堆中为 O(1)
+ * (2)更新已在堆中的 key 的计数时原地上浮/下沉, 为 O(log k), 不需要像 PriorityQueue.remove(Object) 那样 O(k) 地查找
+ * (3)挤出堆顶并放入新元素时直接替换堆顶后下沉, 为 O(log k)
+ * (4)索引表只依赖调用方传入的哈希值, 因此既可以用 String 也可以用 long 查找节点, 查找和更新过程不分配任何对象
+ * 本类不是线程安全的, 需要调用方自行加锁
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class IndexedMinHeap {
+
+    /**
+     * 堆数组
+     */
+    private final Node[] heap;
+
+    /**
+     * 索引表(线性探测的开放寻址表, 容量为 2 的幂并且至少是堆容量的两倍)
+     */
+    private final Node[] table;
+
+    /**
+     * 索引表容量减一
+     */
+    private final int mask;
+
+    /**
+     * 当前堆中的元素个数
+     */
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        this.heap = new Node[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new Node[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * 如果 key 已经在堆中则更新计数并返回 true, 否则返回 false
+     */
+    public boolean update(long keyHash, String key, int count) {
+        Node node = find(keyHash, key);
+        if (node == null) {
+            return false;
+        }
+        changeCount(node, count);
+        return true;
+    }
+
+    /**
+     * 如果 long 类型的 key 已经在堆中则更新计数并返回 true, 否则返回 false
+     */
+    public boolean update(long keyHash, long key, int count) {
+        Node node = find(keyHash, key);
+        if (node == null) {
+            return false;
+        }
+        changeCount(node, count);
+        return true;
+    }
+
+    /**
+     * 如果 key 已经在堆中则在原计数上增加 increment, 返回增加后的保证计数(计数减去误差), 不在堆中时返回 -1
+     */
+    public int increment(long keyHash, String key, int increment) {
+        Node node = find(keyHash, key);
+        if (node == null) {
+            return -1;
+        }
+        changeCount(node, (int) Math.min((long) node.count + increment, Integer.MAX_VALUE));
+        return node.count - node.error;
+    }
+
+    /**
+     * 如果 long 类型的 key 已经在堆中则在原计数上增加 increment, 返回增加后的保证计数(计数减去误差), 不在堆中时返回 -1
+     */
+    public int increment(long keyHash, long key, int increment) {
+        Node node = find(keyHash, key);
+        if (node == null) {
+            return -1;
+        }
+        changeCount(node, (int) Math.min((long) node.count + increment, Integer.MAX_VALUE));
+        return node.count - node.error;
+    }
+
+    /**
+     * 堆是否已满
+     */
+    public boolean isFull() {
+        return size == heap.length;
+    }
+
+    /**
+     * 堆中元素个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 堆顶(最小)元素的计数, 堆为空时返回 0
+     */
+    public int minCount() {
+        return size == 0 ? 0 : heap[0].count;
+    }
+
+    /**
+     * 在堆未满时插入一个新的 key(调用方需要保证 key 不在堆中)
+     */
+    public void insert(long keyHash, String key, int count) {
+        Node node = new Node(key, keyHash, count);
+        node.index = size;
+        heap[size++] = node;
+        putIndex(node);
+        siftUp(node.index);
+    }
+
+    /**
+     * 使用新的 key 替换掉堆顶元素, 返回被挤出的旧堆顶(调用方需要保证堆不为空并且 key 不在堆中)
+     */
+    public Item replaceMin(long keyHash, String key, int count) {
+        return replaceMin(keyHash, key, count, 0);
+    }
+
+    /**
+     * 使用新的 key 替换掉堆顶元素, 并记录新元素计数的误差(Space-Saving 中新元素继承了旧堆顶的计数, 误差即为旧堆顶的计数)
+     */
+    public Item replaceMin(long keyHash, String key, int count, int error) {
+        Node expelled = heap[0];
+        removeIndex(expelled);
+        Node node = new Node(key, keyHash, count);
+        node.error = error;
+        node.index = 0;
+        heap[0] = node;
+        putIndex(node);
+        siftDown(0);
+        return new Item(expelled.key, expelled.count);
+    }
+
+    /**
+     * 如果 key 在堆中则把它移出并返回, 否则返回 null
+     */
+    public Item remove(long keyHash, String key) {
+        Node node = find(keyHash, key);
+        if (node == null) {
+            return null;
+        }
+        removeIndex(node);
+        Node last = heap[--size];
+        heap[size] = null;
+        if (node != last) {
+            heap[node.index] = last;
+            last.index = node.index;
+            siftDown(last.index);
+            siftUp(last.index);
+        }
+        return new Item(node.key, node.count);
+    }
+
+    /**
+     * 将所有元素的计数减半, 由于减半是单调的, 所以堆序不会被破坏, 无需重建
+     */
+    public void halve() {
+        for (int i = 0; i < size; i++) {
+            heap[i].count = heap[i].count >> 1;
+            heap[i].error = heap[i].error >> 1;
+        }
+    }
+
+    /**
+     * 清空堆
+     */
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        Arrays.fill(table, null);
+        size = 0;
+    }
+
+    /**
+     * 复制一份当前堆中元素的快照(未排序), 调用方可以在锁外再排序
+     */
+    public Item[] snapshot() {
+        Item[] items = new Item[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = new Item(heap[i].key, heap[i].count);
+        }
+        return items;
+    }
+
+    /**
+     * 把快照按计数降序排列为列表
+     */
+    public static List<Item> sortDescending(Item[] items) {
+        Arrays.sort(items, (a, b) -> Integer.compare(b.count(), a.count()));
+        return Arrays.asList(items);
+    }
+
+    /**
+     * 在索引表中查找 key 对应的节点, 不存在时返回 null
+     */
+    private Node find(long keyHash, String key) {
+        for (int i = (int) keyHash & mask; table[i] != null; i = (i + 1) & mask) {
+            Node node = table[i];
+            if (node.hash == keyHash && node.key.equals(key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在索引表中查找 long 类型的 key 对应的节点, 不存在时返回 null
+     */
+    private Node find(long keyHash, long key) {
+        for (int i = (int) keyHash & mask; table[i] != null; i = (i + 1) & mask) {
+            Node node = table[i];
+            if (node.hash == keyHash && KeyHash.equalsDecimal(node.key, key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 修改节点计数并恢复堆序
+     */
+    private void changeCount(Node node, int count) {
+        int old = node.count;
+        node.count = count;
+        if (count < old) {
+            siftUp(node.index);
+        } else if (count > old) {
+            siftDown(node.index);
+        }
+    }
+
+    /**
+     * 把节点放入索引表
+     */
+    private void putIndex(Node node) {
+        int i = (int) node.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = node;
+    }
+
+    /**
+     * 把节点移出索引表(线性探测表的向后移动删除, 保证后续节点仍然可以被探测到)
+     */
+    private void removeIndex(Node node) {
+        int i = (int) node.hash & mask;
+        while (table[i] != node) {
+            i = (i + 1) & mask;
+        }
+        table[i] = null;
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            Node moved = table[j];
+            int home = (int) moved.hash & mask;
+            // 如果 moved 的理想位置不在 (i, j] 区间内, 说明它可以也必须前移到空出来的 i 位置
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = moved;
+                table[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * 上浮
+     */
+    private void siftUp(int index) {
+        Node node = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Node parentNode = heap[parent];
+            if (parentNode.count <= node.count) {
+                break;
+            }
+            heap[index] = parentNode;
+            parentNode.index = index;
+            index = parent;
+        }
+        heap[index] = node;
+        node.index = index;
+    }
+
+    /**
+     * 下沉
+     */
+    private void siftDown(int index) {
+        Node node = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (node.count <= heap[child].count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = node;
+        node.index = index;
+    }
+
+}
@@ -0,0 +1,103 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+/**
+ * TopK 中使用的 key 哈希算法
+ * 对 String 类型的 key 直接遍历字符计算 FNV-1a, 对 long 类型的 key 按十进制数字逐位计算, 两者结果完全一致,
+ * 也就是 hash(123L) == hash("123"), 因此调用方混用两种 key 时也会落到同样的桶和同一个堆节点, 并且都不需要分配任何对象
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+final class KeyHash {
+
+    /**
+     * FNV-1a 偏移量
+     */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /**
+     * FNV-1a 素数
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private KeyHash() {
+    }
+
+    /**
+     * 计算 String 类型 key 的 64 位哈希值
+     */
+    static long hash(String key) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * 计算 long 类型 key 的 64 位哈希值, 结果与 hash(Long.toString(key)) 相同
+     */
+    static long hash(long key) {
+        if (key == Long.MIN_VALUE) {
+            return hash(Long.toString(key)); // 无法取反的极端值, 直接退化为字符串计算
+        }
+        long h = FNV_OFFSET;
+        if (key < 0) {
+            h = (h ^ '-') * FNV_PRIME;
+            key = -key;
+        }
+        // 从最高位开始逐位计算, 保证和字符串的字符顺序一致
+        long divisor = 1;
+        while (key / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            h = (h ^ ('0' + (key / divisor) % 10)) * FNV_PRIME;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * 判断字符串是否恰好是 long 值的十进制表示(不分配任何对象)
+     */
+    static boolean equalsDecimal(String text, long value) {
+        if (value == Long.MIN_VALUE) {
+            return text.equals(Long.toString(value));
+        }
+        int index = 0;
+        if (value < 0) {
+            if (text.isEmpty() || text.charAt(0) != '-') {
+                return false;
+            }
+            index = 1;
+            value = -value;
+        }
+        long divisor = 1;
+        int digits = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+            digits++;
+        }
+        if (text.length() - index != digits) {
+            return false;
+        }
+        for (; divisor > 0; divisor /= 10, index++) {
+            if (text.charAt(index) != '0' + (value / divisor) % 10) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64 位哈希的最终混淆步骤(来自 MurmurHash3 的 fmix64), 让每一位输入都能影响到所有输出位
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
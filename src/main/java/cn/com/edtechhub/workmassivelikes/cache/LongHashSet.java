@@ -0,0 +1,189 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 基于 long[] 的开放寻址哈希集合, 凡是在内存中保存某个用户已经点赞的 blogId 集合的地方都使用它(本地缓存、近端缓存、对账任务)
+ * 与 Set<Long> 相比不需要为每个元素分配 Long 对象和 HashMap.Node, 每个元素只占用一个 long 槽位(负载因子不超过 1/2):
+ * (1)查找: 线性探测, 0 作为空槽位标记, 元素 0 单独用一个标记位记录
+ * (2)删除: 使用与 IndexedMinHeap 索引表相同的向后移动删除, 不需要墓碑
+ * JDK 21 压缩指针下由 LongHashSetMemoryReport(src/jmh)实测: 100 万个随机 blogId 时 HashSet<Long> 约 64 字节/元素, 本集合约 17 字节/元素; 1 万个 100 元素的集合时分别约 67 和 21 字节/元素
+ * 所有方法都对集合自身加锁, 调用方如果需要把 "判断 + Redis 操作 + 修改" 作为一个整体, 可以在外部对集合加锁(可重入)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public final class LongHashSet {
+
+    /**
+     * 初始槽位数量
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 槽位数组, 0 代表空槽位
+     */
+    private long[] table;
+
+    /**
+     * 槽位数组长度减一, 用于代替取模
+     */
+    private int mask;
+
+    /**
+     * 元素个数(包括元素 0)
+     */
+    private int size;
+
+    /**
+     * 集合中是否包含元素 0
+     */
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(INITIAL_CAPACITY / 2);
+    }
+
+    /**
+     * 按照预期元素个数一次性分配槽位, 从 Redis/MySQL 批量加载时避免反复扩容
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY / 2, expectedSize) * 2 - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 是否包含某个元素
+     */
+    public synchronized boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        for (int i = slot(value); table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 添加元素, 元素原本不存在时返回 true
+     */
+    public synchronized boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int i = slot(value);
+        while (table[i] != 0) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        if (++size * 2 > table.length) {
+            resize(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * 移除元素, 元素原本存在时返回 true
+     */
+    public synchronized boolean remove(long value) {
+        if (value == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int i = slot(value);
+        while (table[i] != value) {
+            if (table[i] == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = 0;
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            long moved = table[j];
+            // 如果 moved 的理想位置不在 (i, j] 区间内, 说明它可以也必须前移到空出来的 i 位置
+            if (((j - slot(moved)) & mask) >= ((j - i) & mask)) {
+                table[i] = moved;
+                table[j] = 0;
+                i = j;
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * 元素个数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 遍历所有元素(遍历期间持有集合的锁, 其他线程对本集合的读写会等待遍历结束)
+     */
+    public synchronized void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (long value : table) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        if (containsZero) {
+            builder.append(0);
+        }
+        for (long value : table) {
+            if (value != 0) {
+                builder.append(builder.length() > 1 ? ", " : "").append(value);
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * 元素的理想槽位
+     */
+    private int slot(long value) {
+        return (int) KeyHash.mix64(value) & mask;
+    }
+
+    /**
+     * 扩容并重新放入所有元素
+     */
+    private void resize(int capacity) {
+        long[] old = table;
+        table = new long[capacity];
+        mask = capacity - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int i = slot(value);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+}
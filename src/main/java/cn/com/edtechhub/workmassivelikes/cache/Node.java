@@ -9,10 +9,26 @@ public class Node {
 
     final String key;
 
-    final int count;
+    /**
+     * key 的 64 位哈希值, 用于在 IndexedMinHeap 的索引表中定位节点
+     */
+    final long hash;
 
-    Node(String key, int count) {
+    int count;
+
+    /**
+     * 计数的最大高估值, 只有 Space-Saving 会使用, 其余实现中恒为 0
+     */
+    int error;
+
+    /**
+     * 节点当前在堆数组中的下标, 由 IndexedMinHeap 维护
+     */
+    int index;
+
+    Node(String key, long hash, int count) {
         this.key = key;
+        this.hash = hash;
         this.count = count;
     }
 
@@ -0,0 +1,394 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TopK 算法实现(无锁紧凑数组版本的 HeavyKeeper)
+ * 与 HeavyKeeper 的区别:
+ * (1)桶不再是堆上的 Bucket 对象, 而是把 "32 位指纹 + 32 位计数" 打包进一个 long, 整张哈希表就是一个扁平的 long[] 数组
+ * (2)更新桶时不再使用 synchronized, 而是通过 VarHandle 对单个 long 做 CAS, 指纹和计数可以一次性原子替换
+ * (3)每一层使用独立的哈希种子, 不同层的同一个 key 会落到不同的列, 真正起到多层降低冲突的作用
+ * (4)每次 add 只对 key 计算一次 64 位哈希, 各层的桶编号由这个哈希值和层种子混合得到, 不再重复 getBytes() 和哈希
+ * (5)提供 add(long, int) 方法, 热点 key 的判断全程不分配任何对象
+ * (6)整个哈希表就是一个 long[], 可以直接写入快照文件, 重启后按快照的年龄衰减后恢复
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class PackedHeavyKeeper implements TopK, Snapshottable {
+
+    /**
+     * 用于对 long[] 中的单个元素进行 volatile 读和 CAS 写的句柄
+     */
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * 衰减系数表的大小
+     */
+    private static final int LOOKUP_TABLE_SIZE = 256;
+
+    /**
+     * 当前 TopK 数据结构中的总增量次数(使用 LongAdder 避免所有线程争抢同一个计数器)
+     */
+    private final LongAdder total;
+
+    /**
+     * 哈希表, 实际结构是一个按层展开的一维数组, 第 i 层第 j 个桶位于 i * width + j, 每个元素高 32 位为指纹, 低 32 位为计数
+     */
+    private final long[] slots;
+
+    /**
+     * 每一层的哈希种子
+     */
+    private final long[] seeds;
+
+    /**
+     * 代表哈希表中的层数
+     */
+    private final int depth;
+
+    /**
+     * 代表每层中桶的数量
+     */
+    private final int width;
+
+    /**
+     * 衰减系数表
+     */
+    private final double[] lookupTable;
+
+    /**
+     * 带索引的最小堆, 用于存储 TopK 数据结构中的元素
+     */
+    private final IndexedMinHeap minHeap;
+
+    /**
+     * 被挤出的元素流
+     */
+    private final ExpelledStream expelledStream;
+
+    /**
+     * 最小计数, 当元素的计数小于此值时, 不会进入 TopK
+     */
+    private volatile int minCount;
+
+    /**
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
+     */
+    private final int baseMinCount;
+
+    /**
+     * 初始化一个 PackedHeavyKeeper 实例
+     */
+    public PackedHeavyKeeper(int k, int width, int depth, double decay, int minCount) {
+        this.width = width;
+        this.depth = depth;
+        this.minCount = minCount;
+        this.baseMinCount = minCount;
+        this.minHeap = new IndexedMinHeap(k);
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
+        this.total = new LongAdder();
+
+        this.lookupTable = new double[LOOKUP_TABLE_SIZE];
+        for (int i = 0; i < LOOKUP_TABLE_SIZE; i++) {
+            lookupTable[i] = Math.pow(decay, i);
+        }
+
+        this.slots = new long[depth * width];
+
+        // 种子是固定的, 这样同样的 key 在不同实例(或者重启后)中总是映射到同样的桶
+        this.seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = KeyHash.mix64(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    @Override
+    public AddResult add(String key, int increment) {
+        long keyHash = KeyHash.hash(key); // 整个 add 过程只计算这一次哈希
+        int maxCount = increase(keyHash, increment); // 用于追踪当前元素在所有桶中计数的最大值, 用于后续判断是否进入 TopK
+
+        // 如果本元素的最大计数小于最小计数, 则表示此元素不会进入 TopK, 直接返回
+        if (maxCount < minCount) {
+            return new AddResult(null, false, null);
+        }
+
+        // 如果本元素的最大计数大于或等于最小计数, 则表示此元素会进入 TopK, 进行相应的操作
+        synchronized (minHeap) {
+            if (minHeap.update(keyHash, key, maxCount)) {
+                return new AddResult(null, true, key);
+            }
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, key, maxCount);
+                return new AddResult(null, true, key);
+            }
+            if (maxCount >= minHeap.minCount()) {
+                Item expelled = minHeap.replaceMin(keyHash, key, maxCount);
+                expelledStream.offer(expelled);
+                return new AddResult(expelled.key(), true, key);
+            }
+            return new AddResult(null, false, key);
+        }
+    }
+
+    @Override
+    public boolean add(long key, int increment) {
+        long keyHash = KeyHash.hash(key); // 与 KeyHash.hash(Long.toString(key)) 相等, 因此和 add(String, int) 共享同一批桶
+        int maxCount = increase(keyHash, increment);
+        if (maxCount < minCount) {
+            return false;
+        }
+        synchronized (minHeap) {
+            // 已经在堆中的热点 key 只会走到这里, 不需要把 key 转为字符串
+            if (minHeap.update(keyHash, key, maxCount)) {
+                return true;
+            }
+            // 只有 key 新进入堆时才需要分配字符串和节点
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, Long.toString(key), maxCount);
+                return true;
+            }
+            if (maxCount >= minHeap.minCount()) {
+                expelledStream.offer(minHeap.replaceMin(keyHash, Long.toString(key), maxCount));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<Item> list() {
+        Item[] snapshot;
+        synchronized (minHeap) {
+            snapshot = minHeap.snapshot();
+        }
+        return IndexedMinHeap.sortDescending(snapshot);
+    }
+
+    @Override
+    public ExpelledStream expelled() {
+        return expelledStream;
+    }
+
+    @Override
+    public void fading() {
+        // 逐个桶 CAS 减半计数, 指纹保持不变
+        for (int index = 0; index < slots.length; index++) {
+            long slot;
+            long next;
+            do {
+                slot = (long) SLOTS.getVolatile(slots, index);
+                next = pack(fingerprintOf(slot), countOf(slot) >> 1);
+            } while (slot != next && !SLOTS.compareAndSet(slots, index, slot, next));
+        }
+
+        // 对最小堆进行衰减
+        synchronized (minHeap) {
+            minHeap.halve();
+        }
+
+        // 对总流量进行衰减
+        long current = total.sumThenReset();
+        total.add(current >> 1);
+    }
+
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+    }
+
+    @Override
+    public long total() {
+        return total.sum();
+    }
+
+    @Override
+    public void saveSnapshot(Path file) throws IOException {
+        Item[] items;
+        synchronized (minHeap) {
+            items = minHeap.snapshot();
+        }
+        SnapshotFile.write(file, layout(), new long[][]{slots, {total.sum()}}, items);
+    }
+
+    @Override
+    public boolean loadSnapshot(Path file, long halfLifeMillis) throws IOException {
+        SnapshotFile.Content content = SnapshotFile.read(file, layout());
+        if (content == null) {
+            return false;
+        }
+
+        // 快照每经过一个半衰期, 所有计数减半一次, 与定时 fading() 的效果保持一致
+        long age = Math.max(0, System.currentTimeMillis() - content.savedMillis());
+        int halvings = halfLifeMillis > 0 ? (int) Math.min(31, age / halfLifeMillis) : 0;
+        restoreSlots(content.arrays()[0], halvings);
+        total.reset();
+        total.add(content.arrays()[1][0] >> halvings);
+
+        synchronized (minHeap) {
+            minHeap.clear();
+            for (Item item : content.items()) {
+                int count = item.count() >> halvings;
+                if (count >= minCount && !minHeap.isFull()) {
+                    minHeap.insert(KeyHash.hash(item.key()), item.key(), count);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 只更新哈希表和总流量而不触碰最小堆, 返回当前元素在所有桶中计数的最大值(供 WindowedTopK 等组合实现使用)
+     */
+    int increase(long keyHash, int increment) {
+        int fingerprint = (int) (keyHash >>> 32); // 高 32 位作为指纹
+        int maxCount = 0;
+
+        // 遍历哈希表的每一层来映射哈希桶
+        for (int i = 0; i < depth; i++) {
+            int index = i * width + bucketIndex(keyHash, seeds[i]);
+            maxCount = Math.max(maxCount, update(index, fingerprint, increment));
+        }
+
+        // 更新总流量
+        total.add(increment);
+        return maxCount;
+    }
+
+    /**
+     * 只读地估计当前元素的计数, 即所有层中指纹匹配的桶的最大计数
+     */
+    int estimate(long keyHash) {
+        int fingerprint = (int) (keyHash >>> 32);
+        int maxCount = 0;
+        for (int i = 0; i < depth; i++) {
+            long slot = (long) SLOTS.getVolatile(slots, i * width + bucketIndex(keyHash, seeds[i]));
+            if (fingerprintOf(slot) == fingerprint) {
+                maxCount = Math.max(maxCount, countOf(slot));
+            }
+        }
+        return maxCount;
+    }
+
+    /**
+     * 清空哈希表, 最小堆和总流量, 以便复用整个实例
+     */
+    void clear() {
+        Arrays.fill(slots, 0L);
+        synchronized (minHeap) {
+            minHeap.clear();
+        }
+        total.reset();
+    }
+
+    /**
+     * 直接返回哈希表数组本身(不复制), 供 WindowedTopK 写入快照使用
+     */
+    long[] slots() {
+        return slots;
+    }
+
+    /**
+     * 用快照中的哈希表覆盖当前哈希表, 并把所有计数右移 halvings 位
+     */
+    void restoreSlots(long[] saved, int halvings) {
+        for (int index = 0; index < slots.length && index < saved.length; index++) {
+            int count = countOf(saved[index]) >> halvings;
+            SLOTS.setVolatile(slots, index, count == 0 ? 0L : pack(fingerprintOf(saved[index]), count));
+        }
+    }
+
+    /**
+     * 快照布局标识, 哈希表参数不同的快照不能恢复
+     */
+    private long layout() {
+        return SnapshotFile.layout("packed-heavy-keeper", depth, width);
+    }
+
+    /**
+     * 对单个桶执行一次 HeavyKeeper 更新, 返回更新后该桶中属于当前元素的计数(不属于当前元素时返回 0)
+     */
+    private int update(int index, int fingerprint, int increment) {
+        while (true) {
+            long slot = (long) SLOTS.getVolatile(slots, index);
+            int slotFingerprint = fingerprintOf(slot);
+            int slotCount = countOf(slot);
+
+            long next;
+            int result;
+
+            // 如果此时桶为空, 则将此元素添加到桶中
+            if (slotCount == 0) {
+                next = pack(fingerprint, increment);
+                result = increment;
+            }
+            // 如果此时桶不空, 并且不是冲突, 则更新计数
+            else if (slotFingerprint == fingerprint) {
+                result = (int) Math.min((long) slotCount + increment, Integer.MAX_VALUE);
+                next = pack(fingerprint, result);
+            }
+            // 如果此时桶不空, 并且发生冲突, 则按概率衰减计数, 衰减到 0 时由当前元素占据这个桶
+            else {
+                ThreadLocalRandom random = ThreadLocalRandom.current(); // 每个线程独立的随机数生成器, 避免共享 Random 的争抢
+                int count = slotCount;
+                result = 0;
+                next = slot;
+                for (int j = 0; j < increment; j++) {
+                    double decay = lookupTable[Math.min(count, LOOKUP_TABLE_SIZE - 1)];
+                    if (random.nextDouble() < decay) {
+                        count--;
+                        if (count == 0) {
+                            result = increment - j;
+                            next = pack(fingerprint, result);
+                            break;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    next = pack(slotFingerprint, count);
+                }
+            }
+
+            // 桶没有任何变化, 或者 CAS 成功, 都可以直接返回, 否则说明有其他线程同时修改了这个桶, 需要基于新值重试
+            if (next == slot || SLOTS.compareAndSet(slots, index, slot, next)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 根据 key 的哈希值和层种子计算桶编号(使用乘法映射代替取模)
+     */
+    private int bucketIndex(long keyHash, long seed) {
+        long mixed = KeyHash.mix64(keyHash ^ seed);
+        return (int) (((mixed >>> 32) * width) >>> 32);
+    }
+
+    /**
+     * 把指纹和计数打包为一个 long
+     */
+    private static long pack(int fingerprint, int count) {
+        return ((long) fingerprint << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 取出打包值中的指纹
+     */
+    private static int fingerprintOf(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    /**
+     * 取出打包值中的计数
+     */
+    private static int countOf(long slot) {
+        return (int) slot;
+    }
+
+}
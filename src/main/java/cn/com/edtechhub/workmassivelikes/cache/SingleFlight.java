@@ -0,0 +1,93 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
+import cn.com.edtechhub.workmassivelikes.exception.BusinessException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并(single flight), 同一个 key 同时只有一个线程执行加载, 其余线程等待并共享它的结果
+ * 热门博文的缓存过期时会有大量并发请求同时未命中, 如果每个请求都去查询数据库, 数据库会在一瞬间收到成百上千条相同的查询:
+ * (1)合并: 第一个到达的线程在 flights 中登记一个 CompletableFuture 并亲自执行加载, 之后到达的线程直接等待这个 future
+ * (2)失败: 加载抛出的异常原样传递给所有等待的线程, 它们不会各自重试, 避免数据库出问题时重试流量把它彻底压垮
+ * (3)超时: 等待的线程最多等待 timeoutMillis 毫秒, 超时后抛出 TIMEOUT_ERROR, 加载本身不受影响, 完成后仍然可以被之后的请求使用
+ * 加载完成后立即移除登记, 结果不会被缓存, 缓存是调用方(例如 TieredCache)的职责
+ * 注意调用方本身已经按 key 合并加载时(例如 TieredCache 中 Caffeine 的 get(key, loader)), 回源次数不会再减少, 只剩下 (2)(3) 的作用
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public final class SingleFlight<K, V> {
+
+    /**
+     * 正在进行的加载: key -> 加载结果
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 等待的线程最多等待的毫秒数
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 共享了其他线程加载结果的次数
+     */
+    private final LongAdder shared = new LongAdder();
+
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 执行加载, 同一个 key 已经有线程在加载时等待并返回它的结果
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return this.await(existing);
+        }
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 共享了其他线程加载结果的累计次数
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * 等待其他线程的加载结果
+     */
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new BusinessException(CodeBindMessageEnum.TIMEOUT_ERROR, "等待数据加载超时");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(CodeBindMessageEnum.SYSTEM_ERROR, "等待数据加载时被中断");
+        }
+    }
+
+}
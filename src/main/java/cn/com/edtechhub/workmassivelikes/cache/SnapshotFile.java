@@ -0,0 +1,113 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TopK 快照文件的读写工具, 使用内存映射文件一次性写入/读取, 格式为:
+ * 魔数(int) 版本(int) 布局(long) 保存时间(long) 数组个数(int) [数组长度(int) long...]... 元素个数(int) [key 长度(short) key(UTF-8) 计数(int)]...
+ * 其中布局是实现类型和草图参数的组合, 参数不一致的快照不会被恢复
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x484B534E; // "HKSN"
+
+    private static final int VERSION = 1;
+
+    /**
+     * 读取到的快照内容
+     */
+    record Content(long savedMillis, long[][] arrays, Item[] items) {
+    }
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * 写入快照, 数组会被直接读取而不复制, 因此并发写入期间得到的是一个模糊快照(对热点统计来说足够)
+     */
+    static void write(Path file, long layout, long[][] arrays, Item[] items) throws IOException {
+        byte[][] keys = new byte[items.length][];
+        long size = 4 + 4 + 8 + 8 + 4 + 4;
+        for (long[] array : arrays) {
+            size += 4 + 8L * array.length;
+        }
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = items[i].key().getBytes(StandardCharsets.UTF_8);
+            size += 2 + keys[i].length + 4;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(layout).putLong(System.currentTimeMillis());
+                buffer.putInt(arrays.length);
+                for (long[] array : arrays) {
+                    buffer.putInt(array.length);
+                    buffer.asLongBuffer().put(array);
+                    buffer.position(buffer.position() + 8 * array.length);
+                }
+                buffer.putInt(items.length);
+                for (int i = 0; i < items.length; i++) {
+                    buffer.putShort((short) keys[i].length).put(keys[i]).putInt(items[i].count());
+                }
+                buffer.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取快照, 文件不存在或者格式/布局不匹配时返回 null
+     */
+    static Content read(Path file, long layout) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != layout) {
+                return null;
+            }
+            long savedMillis = buffer.getLong();
+            long[][] arrays = new long[buffer.getInt()][];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = new long[buffer.getInt()];
+                buffer.asLongBuffer().get(arrays[i]);
+                buffer.position(buffer.position() + 8 * arrays[i].length);
+            }
+            Item[] items = new Item[buffer.getInt()];
+            for (int i = 0; i < items.length; i++) {
+                byte[] key = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(key);
+                items[i] = new Item(new String(key, StandardCharsets.UTF_8), buffer.getInt());
+            }
+            return new Content(savedMillis, arrays, items);
+        }
+    }
+
+    /**
+     * 把实现类型和参数组合为布局标识
+     */
+    static long layout(String type, long... params) {
+        long layout = KeyHash.hash(type);
+        for (long param : params) {
+            layout = KeyHash.mix64(layout ^ param);
+        }
+        return layout;
+    }
+
+}
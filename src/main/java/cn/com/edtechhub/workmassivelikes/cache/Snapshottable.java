@@ -0,0 +1,25 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 支持把内部状态保存为本地快照文件, 并在重启后恢复的 TopK 实现
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public interface Snapshottable {
+
+    /**
+     * 把草图和最小堆保存到快照文件(先写临时文件再原子替换, 不会留下写了一半的快照)
+     */
+    void saveSnapshot(Path file) throws IOException;
+
+    /**
+     * 从快照文件恢复草图和最小堆, 并按快照的年龄进行衰减, 快照不存在或者参数不匹配时返回 false
+     *
+     * @param halfLifeMillis 计数衰减一半所需的毫秒数, 与定时 fading() 的周期保持一致
+     */
+    boolean loadSnapshot(Path file, long halfLifeMillis) throws IOException;
+
+}
@@ -0,0 +1,171 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.List;
+
+/**
+ * TopK 算法实现(Space-Saving, 也称 Stream-Summary)
+ * 只维护固定数量的计数器, 不需要任何哈希表草图:
+ * (1)已被监控的 key 直接累加计数
+ * (2)计数器未满时新 key 占用一个空计数器
+ * (3)计数器已满时新 key 替换掉计数最小的计数器, 并继承它的计数, 继承来的部分记为误差
+ * 每个计数器的计数最多被高估 "误差" 这么多, 因此本实现以 "计数 - 误差" 作为保证计数来判断热点, 不会因为计数器的替换而误报
+ * 计数器远多于 k 个, 只有按保证计数排在前 k 个(另外用一个容量为 k 的最小堆维护)并且不小于 minCount 的 key 才是热点,
+ * 被挤出的元素流也只记录离开前 k 个的 key, 冷 key 之间替换计数器不会进入元素流, 不会让调用方失效从来没有热过的 key
+ * 计数器的数量 counters 越大精度越高, 所有操作都在同一把锁中完成, 适合对吞吐要求不高但希望内存占用可控的场景
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class SpaceSavingTopK implements TopK {
+
+    /**
+     * 所有计数器(按计数组织为最小堆, 堆顶即为被替换的计数器)
+     */
+    private final IndexedMinHeap counters;
+
+    /**
+     * 按保证计数排在前 k 个的热点 key(堆顶为其中保证计数最小的), list() 也只返回这 k 个 key(计数为保证计数)
+     */
+    private final IndexedMinHeap top;
+
+    /**
+     * 被挤出的元素流
+     */
+    private final ExpelledStream expelledStream;
+
+    /**
+     * 最小计数, 当元素的保证计数小于此值时, 不认为是热点
+     */
+    private volatile int minCount;
+
+    /**
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
+     */
+    private final int baseMinCount;
+
+    /**
+     * 当前 TopK 数据结构中的总增量次数
+     */
+    private long total;
+
+    /**
+     * 初始化一个 SpaceSavingTopK 实例
+     *
+     * @param k        TopK 的 k 值
+     * @param counters 计数器数量, 不能小于 k
+     * @param minCount 判断热点的最小保证计数
+     */
+    public SpaceSavingTopK(int k, int counters, int minCount) {
+        this.minCount = minCount;
+        this.baseMinCount = minCount;
+        this.counters = new IndexedMinHeap(Math.max(k, counters));
+        this.top = new IndexedMinHeap(k);
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public AddResult add(String key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        synchronized (counters) {
+            total += increment;
+
+            // 如果当前 key 已经被监控, 则直接累加计数
+            int guaranteed = counters.increment(keyHash, key, increment);
+            if (guaranteed < 0) {
+                guaranteed = this.monitor(keyHash, key, increment);
+            }
+
+            // 按保证计数更新前 k 个热点
+            if (top.update(keyHash, key, guaranteed)) {
+                return new AddResult(null, true, key);
+            }
+            if (guaranteed < minCount || (top.isFull() && guaranteed <= top.minCount())) {
+                return new AddResult(null, false, key);
+            }
+            if (!top.isFull()) {
+                top.insert(keyHash, key, guaranteed);
+                return new AddResult(null, true, key);
+            }
+            Item expelled = top.replaceMin(keyHash, key, guaranteed);
+            expelledStream.offer(expelled);
+            return new AddResult(expelled.key(), true, key);
+        }
+    }
+
+    @Override
+    public boolean add(long key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        synchronized (counters) {
+            total += increment;
+            int guaranteed = counters.increment(keyHash, key, increment);
+            if (guaranteed < 0) {
+                guaranteed = this.monitor(keyHash, Long.toString(key), increment); // 只有 key 新占用计数器时才需要分配字符串和节点
+            }
+            if (top.update(keyHash, key, guaranteed)) {
+                return true;
+            }
+            if (guaranteed < minCount || (top.isFull() && guaranteed <= top.minCount())) {
+                return false;
+            }
+            if (!top.isFull()) {
+                top.insert(keyHash, Long.toString(key), guaranteed);
+                return true;
+            }
+            expelledStream.offer(top.replaceMin(keyHash, Long.toString(key), guaranteed));
+            return true;
+        }
+    }
+
+    /**
+     * 为还没有被监控的 key 分配计数器, 返回它的保证计数(调用方持有锁)
+     * 计数器已满时替换掉计数最小的计数器, 新 key 继承其计数并记为误差, 被替换的 key 如果还在前 k 个中则一并移出(放入被挤出的元素流)
+     */
+    private int monitor(long keyHash, String key, int increment) {
+        if (!counters.isFull()) {
+            counters.insert(keyHash, key, increment);
+            return increment;
+        }
+        int min = counters.minCount();
+        Item replaced = counters.replaceMin(keyHash, key, (int) Math.min((long) min + increment, Integer.MAX_VALUE), min);
+        Item expelled = top.remove(KeyHash.hash(replaced.key()), replaced.key());
+        if (expelled != null) {
+            expelledStream.offer(expelled);
+        }
+        return increment;
+    }
+
+    @Override
+    public List<Item> list() {
+        Item[] snapshot;
+        synchronized (counters) {
+            snapshot = top.snapshot();
+        }
+        return IndexedMinHeap.sortDescending(snapshot);
+    }
+
+    @Override
+    public ExpelledStream expelled() {
+        return expelledStream;
+    }
+
+    @Override
+    public void fading() {
+        synchronized (counters) {
+            counters.halve(); // 计数和误差同时减半, 保证计数依然是下界
+            top.halve();
+            total = total >> 1;
+        }
+    }
+
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+    }
+
+    @Override
+    public long total() {
+        synchronized (counters) {
+            return total;
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TopK 算法实现(分条带版本的 HeavyKeeper)
+ * 即便是基于 CAS 的 PackedHeavyKeeper, 在上千个 Tomcat 线程同时更新同一批热点桶时, 缓存行也会在 CPU 之间来回失效
+ * 因此这里把草图拆分为多个条带(stripe), 每个线程固定写入自己所属的条带, 各个条带之间互不干扰:
+ * (1)写入: 线程根据自己的线程 id 选择条带, 只更新这个条带私有的 PackedHeavyKeeper
+ * (2)合并: 后台合并线程每隔 stalenessMillis 毫秒把所有条带的 TopK 累加起来, 取前 k 个发布为一个不可变的共享视图
+ * (3)判断: add 返回的是否热点以共享视图为准, 因此热点判断最多滞后 stalenessMillis 毫秒, 但读视图本身没有任何锁
+ * (4)共享视图是按 key 哈希值排序的数组, add(long, int) 可以直接用 long 查找, 全程不分配任何对象
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class StripedTopK implements TopK, AutoCloseable {
+
+    /**
+     * 条带, 每个条带都是一个独立的 PackedHeavyKeeper
+     */
+    private final PackedHeavyKeeper[] stripes;
+
+    /**
+     * 条带数量减一, 条带数量总是 2 的幂, 方便使用位运算选择条带
+     */
+    private final int mask;
+
+    /**
+     * TopK 的 k 值
+     */
+    private final int k;
+
+    /**
+     * 最小计数, 合并后计数小于此值的元素不会进入共享视图
+     */
+    private volatile int minCount;
+
+    /**
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
+     */
+    private final int baseMinCount;
+
+    /**
+     * 共享视图: 合并后的热点 key 集合(不可变, 整体替换)
+     */
+    private volatile HotKeySet hotView = HotKeySet.EMPTY;
+
+    /**
+     * 共享视图: 合并后按计数降序排列的 TopK 列表(不可变, 整体替换)
+     */
+    private volatile List<Item> hotList = List.of();
+
+    /**
+     * 被挤出共享视图的元素流
+     */
+    private final ExpelledStream expelledStream;
+
+    /**
+     * 后台合并线程
+     */
+    private final ScheduledExecutorService merger;
+
+    /**
+     * 初始化一个 StripedTopK 实例
+     *
+     * @param k               TopK 的 k 值
+     * @param width           所有条带加起来的桶宽度, 会平均分给每个条带
+     * @param depth           每个条带的层数
+     * @param decay           衰减系数
+     * @param minCount        合并后进入 TopK 的最小计数
+     * @param stripeCount     条带数量, 小于等于 0 时使用 CPU 核数, 最终会向上取整为 2 的幂
+     * @param stalenessMillis 共享视图最多允许滞后的毫秒数, 也就是后台合并的间隔
+     */
+    public StripedTopK(int k, int width, int depth, double decay, int minCount, int stripeCount, long stalenessMillis) {
+        int count = stripeCount > 0 ? stripeCount : Runtime.getRuntime().availableProcessors();
+        count = count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1; // 向上取整为 2 的幂
+
+        this.k = k;
+        this.minCount = minCount;
+        this.baseMinCount = minCount;
+        this.mask = count - 1;
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
+        this.stripes = new PackedHeavyKeeper[count];
+        int stripeWidth = Math.max(width / count, k); // 每个条带只承担 1/count 的流量, 因此桶宽度也按比例缩小
+        int stripeMinCount = Math.max(1, minCount / count); // 每个条带只看到 1/count 的计数, 门槛也按比例降低
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new PackedHeavyKeeper(k, stripeWidth, depth, decay, stripeMinCount);
+        }
+
+        this.merger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "striped-topk-merger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.merger.scheduleWithFixedDelay(this::merge, stalenessMillis, stalenessMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public AddResult add(String key, int increment) {
+        stripes[stripeIndex()].add(key, increment); // 只写入当前线程所属的条带
+        boolean isHot = hotView.contains(key); // 热点判断只读共享视图, 没有任何锁
+        return new AddResult(null, isHot, key);
+    }
+
+    @Override
+    public boolean add(long key, int increment) {
+        stripes[stripeIndex()].add(key, increment);
+        return hotView.contains(key);
+    }
+
+    @Override
+    public List<Item> list() {
+        return hotList;
+    }
+
+    @Override
+    public ExpelledStream expelled() {
+        return expelledStream;
+    }
+
+    @Override
+    public void fading() {
+        for (PackedHeavyKeeper stripe : stripes) {
+            stripe.fading();
+        }
+        merge();
+    }
+
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+        for (PackedHeavyKeeper stripe : stripes) {
+            stripe.setMinCountDivisor(divisor); // 条带的门槛已经按条带数降低, 再按同一个除数降低
+        }
+    }
+
+    @Override
+    public long total() {
+        long total = 0;
+        for (PackedHeavyKeeper stripe : stripes) {
+            total += stripe.total();
+        }
+        return total;
+    }
+
+    /**
+     * 把所有条带的 TopK 累加合并, 重新发布共享视图, 并把掉出视图的元素放入被挤出的元素流
+     */
+    public synchronized void merge() {
+        // 累加每个条带中的计数
+        Map<String, Integer> merged = new HashMap<>();
+        for (PackedHeavyKeeper stripe : stripes) {
+            for (Item item : stripe.list()) {
+                merged.merge(item.key(), item.count(), Integer::sum);
+            }
+            stripe.expelled().clear(); // 条带内部的挤出没有意义, 只关心共享视图的挤出
+        }
+
+        // 取计数最大的前 k 个作为新的视图
+        List<Item> candidates = new ArrayList<>(merged.size());
+        merged.forEach((key, count) -> {
+            if (count >= minCount) {
+                candidates.add(new Item(key, count));
+            }
+        });
+        candidates.sort((a, b) -> Integer.compare(b.count(), a.count()));
+        List<Item> top = List.copyOf(candidates.subList(0, Math.min(k, candidates.size())));
+
+        HotKeySet view = HotKeySet.of(top);
+
+        // 旧视图中存在而新视图中不存在的元素即为被挤出的元素
+        for (Item item : hotList) {
+            if (!view.contains(item.key())) {
+                expelledStream.offer(item);
+            }
+        }
+
+        hotView = view;
+        hotList = top;
+    }
+
+    @Override
+    public void close() {
+        merger.shutdownNow();
+    }
+
+    /**
+     * 根据当前线程 id 选择条带, 同一个线程总是落到同一个条带
+     */
+    private int stripeIndex() {
+        return (int) KeyHash.mix64(Thread.currentThread().threadId()) & mask;
+    }
+
+}
@@ -0,0 +1,169 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * 已点赞 (userId, blogId) 的本地布隆过滤器, 用于在访问 Redis 之前排除一定没有点赞的组合
+ * 博文列表中绝大多数博文都没有被当前用户点赞, 布隆过滤器判定 "一定不存在" 的博文不需要再查询用户点赞记录
+ * 过滤器只能添加不能删除, 并且应该包含所有已经点赞的组合(漏掉一个就会把已点赞误判为未点赞), 因此:
+ * (1)写入: 点赞成功后添加到本实例的过滤器, 并通过 Redis 发布订阅广播给其他实例, Lua 脚本发现早已点赞时只添加到本实例的过滤器(见 ThumbChangeBroadcaster)
+ * (2)重建: 定时扫描 Redis 中的用户点赞记录(点赞状态以 Redis 为准, 包括尚未同步到 MySQL 的点赞)构建新的过滤器, 清除已经取消的点赞, 同时修复丢失的广播
+ * (3)增量: 重建开始时新建一个增量过滤器记录扫描期间的所有点赞, 替换前后各合并一次
+ * 发布订阅最多投递一次, 丢失的广播在下一次重建之前会让其他实例的博文列表把已点赞显示为未点赞, 因此过滤器的结果只用于博文列表(尽力而为)
+ * 点赞/取消点赞一律由 Lua 脚本判断, 不能依据过滤器拒绝写入
+ * 首次重建完成之前过滤器不可用, mightContain() 一律返回 true
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ThumbBloomFilter {
+
+    /**
+     * 注入点赞键空间专用的 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Long> thumbRedisTemplate;
+
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 注入 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注入 Redis 消息监听容器
+     */
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 是否开启布隆过滤器
+     */
+    @Value("${cache.thumb-bloom.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 预期的点赞记录条数
+     */
+    @Value("${cache.thumb-bloom.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    /**
+     * 预期误判率
+     */
+    @Value("${cache.thumb-bloom.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 当前使用的过滤器, 首次重建完成之前为 null
+     */
+    private volatile BloomFilter current;
+
+    /**
+     * 本次重建开始之后的所有点赞(只在重建过程中存在)
+     */
+    private volatile BloomFilter nextDelta;
+
+    /**
+     * 订阅其他实例广播的点赞
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            Object pair = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (pair != null) {
+                String text = pair.toString();
+                int separator = text.indexOf(':');
+                this.putLocal(Long.parseLong(text.substring(0, separator)), Long.parseLong(text.substring(separator + 1)));
+            }
+        }, new ChannelTopic(ThumbConstant.THUMB_BLOOM_CHANNEL));
+    }
+
+    /**
+     * 是否开启了布隆过滤器
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 用户可能点赞了博文时返回 true, 返回 false 时一定没有点赞
+     */
+    public boolean mightContain(long userId, long blogId) {
+        BloomFilter filter = current;
+        return filter == null || filter.mightContain(userId, blogId);
+    }
+
+    /**
+     * 从 Redis 中的用户点赞记录重建过滤器
+     */
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        nextDelta = new BloomFilter(expectedInsertions, fpp); // 先开始记录本次重建之后的点赞, 再扫描 Redis
+
+        // 分桶等布局中同一个用户有多个键, 先收集所有 userId 再逐个读取点赞集合
+        LongHashSet userIds = new LongHashSet();
+        try (Cursor<String> cursor = thumbRedisTemplate.scan(ScanOptions.scanOptions().match(ThumbConstant.USER_THUMB_KEY_PREFIX + "*").count(1000).build())) {
+            while (cursor.hasNext()) {
+                Long userId = thumbKeyLayout.parseUserId(cursor.next()); // thumb:temp:* 等不是用户点赞记录的键返回 null
+                if (userId != null) {
+                    userIds.add(userId);
+                }
+            }
+        }
+        BloomFilter rebuilt = new BloomFilter(expectedInsertions, fpp);
+        long[] count = new long[1];
+        userIds.forEach(userId -> thumbKeyLayout.blogIds(String.valueOf(userId)).forEach(blogId -> {
+            rebuilt.put(userId, blogId);
+            count[0]++;
+        }));
+
+        // 合并重建过程中的点赞
+        rebuilt.or(nextDelta);
+        current = rebuilt;
+
+        // 替换之前读到旧过滤器的并发写入一定已经先写入了增量, 替换之后再合并一次, 保证不会遗漏
+        rebuilt.or(nextDelta);
+        nextDelta = null;
+        log.debug("点赞布隆过滤器重建完成, 用户 {} 个, 点赞记录 {} 条, 占用 {} 字节, 耗时 {} ms", userIds.size(), count[0], rebuilt.sizeInBytes(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 添加到本实例的所有过滤器(广播给其他实例由 ThumbChangeBroadcaster 与近端缓存的失效合并发送)
+     */
+    void putLocal(long userId, long blogId) {
+        // 先写入增量再写入当前过滤器, 重建替换当前过滤器之后会再合并一次增量, 因此并发重建时不会遗漏
+        BloomFilter next = nextDelta;
+        if (next != null) {
+            next.put(userId, blogId);
+        }
+        BloomFilter filter = current;
+        if (filter != null) {
+            filter.put(userId, blogId);
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 用户点赞集合变化后的跨实例广播, 把近端缓存的失效和布隆过滤器的添加合并为流水线批量发送
+ * 每次点赞原本要在请求线程上依次执行 Lua 脚本、失效近端缓存的 PUBLISH、广播布隆过滤器的 PUBLISH 共三次往返, 这里:
+ * (1)本地: 先在调用线程上直接失效本实例的近端缓存、添加到本实例的布隆过滤器
+ * (2)广播: 只有点赞集合确实发生变化时才广播(重复点赞/取消点赞只修复本实例的布隆过滤器), 消息放入队列后由广播线程批量发送,
+ * 广播线程发送上一批时到达的消息自然地积累为下一批, 同一批中相同的消息只发送一次, 整批放进同一个流水线, 请求线程不再等待任何 PUBLISH 往返
+ * (3)热点: 热点用户在 localCache 中的已点赞集合只用来在本地拒绝重复点赞, 因此任意实例取消点赞后都要移除对应的 blogId,
+ * 这里单独广播 "userId:blogId" 而不是订阅失效频道整体删除集合, 否则本实例每次点赞成功后收到自己的失效消息都会清空热点用户的集合
+ * 移除只会让下一次点赞多访问一次 Redis, 不会误判, 消息丢失或者与并发的点赞交错时残留的 blogId 最多保留到 localCache 的过期时间
+ * 发布订阅本身不保证送达, 队列已满或者发送失败时直接丢弃消息, 与消息丢失一样由各个缓存的过期时间兜底, 消息格式与 UserThumbNearCache、ThumbBloomFilter 订阅的格式相同
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ThumbChangeBroadcaster {
+
+    /**
+     * 等待广播的消息个数上限
+     */
+    private static final int QUEUE_CAPACITY = 65536;
+
+    /**
+     * 每批最多发送的消息个数
+     */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * 注入 Redis 客户端(与订阅方使用相同的值序列化器)
+     */
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注入用户点赞集合的近端缓存
+     */
+    @Resource
+    private UserThumbNearCache userThumbNearCache;
+
+    /**
+     * 注入已点赞组合的布隆过滤器
+     */
+    @Resource
+    private ThumbBloomFilter thumbBloomFilter;
+
+    /**
+     * 注入热点用户的本地缓存(userId -> 已经点赞的 blogId 集合)
+     */
+    @Resource
+    private Cache<String, Object> localCache;
+
+    /**
+     * 注入 Redis 消息监听容器
+     */
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 等待广播的消息
+     */
+    private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * 广播线程
+     */
+    private Thread publisher;
+
+    /**
+     * 是否正在运行
+     */
+    private volatile boolean running;
+
+    /**
+     * 一条等待广播的消息
+     */
+    private record Message(String channel, String body) {
+    }
+
+    /**
+     * 订阅取消点赞频道(从热点用户的集合中移除其他实例取消点赞的博文), 并启动广播线程
+     */
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            Object pair = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (pair != null) {
+                String text = pair.toString();
+                int separator = text.indexOf(':');
+                this.removeLocal(text.substring(0, separator), Long.parseLong(text.substring(separator + 1)));
+            }
+        }, new ChannelTopic(ThumbConstant.THUMB_UNLIKE_CHANNEL));
+
+        this.running = true;
+        this.publisher = new Thread(this::loop, "thumb-change-broadcaster");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+    }
+
+    /**
+     * 停止广播线程, 发送完已经提交的消息
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        publisher.interrupt();
+        publisher.join(1000);
+        List<Message> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            this.publish(rest);
+        }
+    }
+
+    /**
+     * 用户的点赞集合确实发生了变化: likedBlogIds 中的博文刚刚点赞(加入布隆过滤器), unlikedBlogIds 中的博文刚刚取消点赞(移出热点用户的集合), 两者都为空时什么都不做
+     */
+    public void changed(String userId, List<Long> likedBlogIds, List<Long> unlikedBlogIds) {
+        if (likedBlogIds.isEmpty() && unlikedBlogIds.isEmpty()) {
+            return;
+        }
+        long userIdValue = Long.parseLong(userId);
+        boolean bloomEnabled = thumbBloomFilter.isEnabled();
+
+        // 本地直接生效
+        userThumbNearCache.invalidateLocal(userId);
+        if (bloomEnabled) {
+            for (Long blogId : likedBlogIds) {
+                thumbBloomFilter.putLocal(userIdValue, blogId);
+            }
+        }
+        for (Long blogId : unlikedBlogIds) {
+            this.removeLocal(userId, blogId);
+        }
+
+        // 通知其他实例
+        this.enqueue(new Message(ThumbConstant.USER_THUMB_INVALIDATE_CHANNEL, userId));
+        if (bloomEnabled) {
+            for (Long blogId : likedBlogIds) {
+                this.enqueue(new Message(ThumbConstant.THUMB_BLOOM_CHANNEL, userId + ":" + blogId));
+            }
+        }
+        for (Long blogId : unlikedBlogIds) {
+            this.enqueue(new Message(ThumbConstant.THUMB_UNLIKE_CHANNEL, userId + ":" + blogId));
+        }
+    }
+
+    /**
+     * 重复点赞时 blogIds 在 Redis 中早已处于点赞状态, 只把它们加入本实例的布隆过滤器(修复本实例可能丢失的广播), 不广播
+     */
+    public void alreadyLiked(String userId, List<Long> blogIds) {
+        if (!thumbBloomFilter.isEnabled()) {
+            return;
+        }
+        long userIdValue = Long.parseLong(userId);
+        for (Long blogId : blogIds) {
+            thumbBloomFilter.putLocal(userIdValue, blogId);
+        }
+    }
+
+    /**
+     * 放入广播队列, 队列已满时丢弃
+     */
+    private void enqueue(Message message) {
+        if (!queue.offer(message)) {
+            log.debug("点赞变化广播队列已满, 丢弃消息 {}", message);
+        }
+    }
+
+    /**
+     * 广播线程: 取到第一条消息后带上所有已经到达的消息, 整批发送
+     */
+    private void loop() {
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.publish(batch);
+                batch.clear();
+            }
+        }
+        // 退出前把已经取出的消息发送完
+        if (!batch.isEmpty()) {
+            this.publish(batch);
+        }
+    }
+
+    /**
+     * 在一个流水线中发送一批消息(相同的消息只发送一次), 发送失败时丢弃本批
+     */
+    @SuppressWarnings("unchecked")
+    private void publish(List<Message> messages) {
+        Set<Message> distinct = new LinkedHashSet<>(messages);
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Message message : distinct) {
+                    connection.publish(bytes(message.channel()), serializer.serialize(message.body()));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("点赞变化广播发送失败, 丢弃本批 {} 条消息", distinct.size(), e);
+        }
+    }
+
+    /**
+     * 从本实例热点用户的集合中移除已经取消点赞的博文(与 ThumbServiceImpl 一样对集合加锁)
+     */
+    private void removeLocal(String userId, long blogId) {
+        if (localCache.getIfPresent(userId) instanceof LongHashSet likedBlogs) {
+            synchronized (likedBlogs) {
+                likedBlogs.remove(blogId);
+            }
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
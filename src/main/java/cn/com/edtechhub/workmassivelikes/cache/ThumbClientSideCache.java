@@ -0,0 +1,166 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.RedisProtocol;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.csc.CacheConfig;
+import redis.clients.jedis.csc.CacheStats;
+import redis.clients.jedis.csc.Cacheable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户点赞记录的 Redis 客户端缓存(服务端协助, 需要 Redis 7.4 及以上)
+ * 通过 RESP3 连接开启 CLIENT TRACKING, 客户端缓存读过的命令结果, 键被修改时由 Redis 推送失效消息, 与 UserThumbNearCache 相比不需要业务代码广播失效:
+ * (1)范围: 只缓存平铺布局 thumb:{userId} 上的 HEXISTS/HMGET/HGET, 其余命令和 thumb:temp:* 等键一律直接访问 Redis
+ * (2)失效: Jedis 使用默认的跟踪模式, Redis 只为本连接读过的键推送失效消息, 不需要 BCAST 前缀广播
+ * (3)统计: stats() 返回命中/未命中/失效次数, 由定时任务输出命中率
+ * 默认关闭, 开启后博文列表的点赞情况查询改为经过本缓存的 HMGET, 不再使用 UserThumbNearCache
+ * 项目使用 Jedis 而不是 Lettuce 作为 Redis 客户端, 因此这里使用 Jedis 5.2 的客户端缓存, 单独建立一个 RESP3 连接池, RedisTemplate 的连接不受影响
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ThumbClientSideCache {
+
+    /**
+     * 注入 Redis 连接配置
+     */
+    @Resource
+    private RedisProperties redisProperties;
+
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 是否开启客户端缓存
+     */
+    @Value("${cache.thumb-client-cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 客户端缓存最多缓存的命令结果个数
+     */
+    @Value("${cache.thumb-client-cache.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * 开启客户端缓存的连接池, 未开启时为 null
+     */
+    private JedisPooled jedis;
+
+    /**
+     * 开启时创建 RESP3 连接池
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        DefaultJedisClientConfig clientConfig = DefaultJedisClientConfig.builder()
+                .protocol(RedisProtocol.RESP3) // 客户端缓存依赖 RESP3 的推送消息
+                .database(redisProperties.getDatabase())
+                .user(redisProperties.getUsername())
+                .password(redisProperties.getPassword())
+                .timeoutMillis(redisProperties.getTimeout() == null ? Protocol.DEFAULT_TIMEOUT : (int) redisProperties.getTimeout().toMillis())
+                .build();
+        CacheConfig cacheConfig = CacheConfig.builder()
+                .maxSize(maxSize)
+                .cacheable(new ThumbCacheable())
+                .build();
+        this.jedis = new JedisPooled(new HostAndPort(redisProperties.getHost(), redisProperties.getPort()), clientConfig, cacheConfig);
+        log.debug("点赞记录的 Redis 客户端缓存已开启, 最多缓存 {} 个结果", maxSize);
+    }
+
+    /**
+     * 关闭连接池
+     */
+    @PreDestroy
+    public void destroy() {
+        if (jedis != null) {
+            jedis.close();
+        }
+    }
+
+    /**
+     * 是否开启了客户端缓存
+     */
+    public boolean isEnabled() {
+        return jedis != null;
+    }
+
+    /**
+     * 批量判断用户是否点赞了这些博文(按所在的键分组 HMGET), 与 blogIds 一一对应
+     * 分桶布局需要先读取桶数、位图布局的键不能执行 HMGET, 这两种布局直接交给键布局查询(不经过客户端缓存)
+     */
+    public List<Boolean> hasThumb(String userId, List<Long> blogIds) {
+        if (!thumbKeyLayout.isFlat()) {
+            return thumbKeyLayout.hasThumb(userId, blogIds);
+        }
+        Map<Long, Boolean> hasThumb = new HashMap<>();
+        thumbKeyLayout.groupByKey(userId, blogIds).forEach((key, group) -> {
+            String[] fields = new String[group.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = group.get(i).toString();
+            }
+            List<String> values = jedis.hmget(key, fields);
+            for (int i = 0; i < values.size(); i++) {
+                hasThumb.put(group.get(i), values.get(i) != null);
+            }
+        });
+        List<Boolean> result = new ArrayList<>(blogIds.size());
+        for (Long blogId : blogIds) {
+            result.add(hasThumb.get(blogId));
+        }
+        return result;
+    }
+
+    /**
+     * 客户端缓存的统计信息, 未开启时返回 null
+     */
+    public CacheStats stats() {
+        return jedis == null ? null : jedis.getCache().getStats();
+    }
+
+    /**
+     * 只缓存用户点赞记录上的读命令
+     */
+    static final class ThumbCacheable implements Cacheable {
+
+        @Override
+        public boolean isCacheable(ProtocolCommand command, List<Object> keys) {
+            if (command != Protocol.Command.HEXISTS && command != Protocol.Command.HMGET && command != Protocol.Command.HGET) {
+                return false;
+            }
+            for (Object key : keys) {
+                String name = key instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : key.toString();
+                if (!name.startsWith(ThumbConstant.USER_THUMB_KEY_PREFIX) || name.startsWith(RedisKeyUtil.getTempThumbKey(""))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
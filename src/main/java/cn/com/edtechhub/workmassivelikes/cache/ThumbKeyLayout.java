@@ -0,0 +1,596 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.LuaScriptConstant;
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
+import cn.com.edtechhub.workmassivelikes.enums.ThumbLayoutEnum;
+import cn.com.edtechhub.workmassivelikes.enums.ThumbTypeEnum;
+import cn.com.edtechhub.workmassivelikes.exception.BusinessException;
+import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
+import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 用户点赞记录的键布局, 负责计算 (userId, blogId) 所在的键, 以及跨越一个用户所有键的读取
+ * 点赞多的用户的 thumb:{userId} 会超过 hash-max-listpack-entries(默认 128), 转为 hashtable 编码后每个字段的内存会成倍增加, 因此提供三种布局:
+ * (1)flat: 每个用户一个哈希 thumb:{userId}, 与之前的数据完全兼容
+ * (2)bucketed: 每个用户若干个哈希 thumb:{userId}:{bucket}, 桶数保存在 thumb:{userId}:buckets 中, 按线性哈希随点赞数逐个分裂增长
+ * (3)bitmap: 每个用户按博文序号(见 BlogOrdinalIndex)分块的位图 thumb:bits:{userId}:{chunk}, 每篇博文只占 1 位, 适合点赞密集、博文总数有限的部署
+ * 固定的桶数无法同时照顾两端: 点赞很少的用户白白占用多个键(每个键约有几十字节的固定开销), 点赞很多的用户每个桶仍然会超过 listpack 的上限
+ * 因此分桶布局中每个用户从 1 个桶开始, 写入后所在的桶超过 USER_THUMB_BUCKET_SPLIT_ENTRIES 个记录时, 由 Lua 脚本按顺序分裂下一个桶(见 LuaScriptConstant.BUCKETED_FUNCTIONS)
+ * 桶号由 bucket() 计算, Java 与 Lua 使用相同的哈希(博文 ID 十进制文本的 SHA-1 的前 32 位), 寻址需要先读取桶数, 所以分桶布局的写入和读取都在 Lua 脚本中完成, 避免与分裂交错
+ * 位图布局中每个块固定 bitmapChunkBits 位, 没有点赞的块不会创建, 用户已有的块记录在块集合 thumb:bits:{userId}:chunks 中(由 Lua 脚本与块一起维护), 读取全部点赞时只访问这些块
+ * 判断一页博文的点赞情况时按块分组流水线执行 BITFIELD GET u1
+ * 写入时通过 thumbSlot()/findSlot() 得到 (键, 字段), 哈希布局的字段是 blogId(分桶布局的键是用户的键名前缀 thumb:{userId}, 由脚本选择桶), 位图布局的字段是块内的位偏移, 并由 thumbScript()/unthumbScript()/batchScript() 选择对应的 Lua 脚本
+ * 只有点赞使用 thumbSlot() 为博文分配序号, 取消点赞和回滚使用 findSlot() 只查询序号, 没有序号的博文一定没有被点赞, 序号不会因为取消点赞或者不存在的博文而增长
+ * 切换布局时开启 migrate-on-startup, 启动时把旧布局的键迁移到新布局(迁移期间不能有其他实例以旧布局写入)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ThumbKeyLayout {
+
+    /**
+     * 流水线读取时把字段和值解析为字符串
+     */
+    private static final RedisSerializer<String> STRING = RedisSerializer.string();
+
+    /**
+     * 流水线读取位图时保留原始字节
+     */
+    private static final RedisSerializer<byte[]> BYTES = RedisSerializer.byteArray();
+
+    /**
+     * 位图布局的点赞记录键前缀 thumb:bits:
+     */
+    private static final String BITMAP_KEY_PREFIX = ThumbConstant.USER_THUMB_BITMAP_KEY_PREFIX.substring(0, ThumbConstant.USER_THUMB_BITMAP_KEY_PREFIX.indexOf("%s"));
+
+    /**
+     * 迁移到分桶布局时每次执行批量脚本写入的博文个数
+     */
+    private static final int MIGRATE_BATCH_SIZE = 500;
+
+    /**
+     * 计算分桶布局哈希值的 SHA-1(MessageDigest 不是线程安全的)
+     */
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * 注入点赞键空间专用的 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Long> thumbRedisTemplate;
+
+    /**
+     * 注入博文序号索引(只有位图布局使用)
+     */
+    @Resource
+    private BlogOrdinalIndex blogOrdinalIndex;
+
+    /**
+     * 键布局类型
+     */
+    @Value("${thumb.layout.type:flat}")
+    private String layoutType;
+
+    /**
+     * 位图布局中每个块的位数
+     */
+    @Value("${thumb.layout.bitmap-chunk-bits:8192}")
+    private long bitmapChunkBits;
+
+    /**
+     * 启动时是否把其他布局的键迁移到当前布局
+     */
+    @Value("${thumb.layout.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
+    /**
+     * 当前使用的布局
+     */
+    private ThumbLayoutEnum layout;
+
+    /**
+     * 点赞记录在 Redis 中的位置: 键以及键内的字段(哈希布局为 blogId, 位图布局为位偏移)
+     */
+    public record ThumbSlot(String key, long field) {
+    }
+
+    /**
+     * 解析布局配置, 需要时迁移旧布局的键
+     */
+    @PostConstruct
+    public void init() {
+        this.layout = Objects.requireNonNull(ThumbLayoutEnum.getEnumByValue(layoutType), "未知的点赞记录键布局: " + layoutType);
+        if (bitmapChunkBits <= 0 || bitmapChunkBits % 8 != 0) {
+            throw new IllegalArgumentException("thumb.layout.bitmap-chunk-bits 必须是大于 0 的 8 的倍数");
+        }
+        log.debug("点赞记录使用 {} 布局", layout.getValue());
+        if (migrateOnStartup) {
+            this.migrate();
+        }
+    }
+
+    /**
+     * 当前布局是否为平铺布局(只有平铺布局可以在不读取桶数的情况下确定哈希键)
+     */
+    public boolean isFlat() {
+        return layout == ThumbLayoutEnum.FLAT;
+    }
+
+    /**
+     * 用户点赞这篇博文时点赞记录所在的位置(位图布局时博文还没有序号则在确认博文存在后分配一个, 不存在时抛出 NOT_FOUND_ERROR)
+     */
+    public ThumbSlot thumbSlot(String userId, long blogId) {
+        ThumbSlot slot = this.thumbSlots(userId, List.of(blogId)).get(0);
+        if (slot == null) {
+            throw new BusinessException(CodeBindMessageEnum.NOT_FOUND_ERROR, "博文 " + blogId + " 不存在");
+        }
+        return slot;
+    }
+
+    /**
+     * 批量获取用户点赞这些博文时点赞记录所在的位置, 与 blogIds 一一对应, 位图布局中不存在的博文为 null
+     */
+    public List<ThumbSlot> thumbSlots(String userId, List<Long> blogIds) {
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            return blogOrdinalIndex.ordinals(blogIds).stream().map(ordinal -> ordinal == null ? null : this.bitmapSlot(userId, ordinal)).toList();
+        }
+        return blogIds.stream().map(blogId -> new ThumbSlot(RedisKeyUtil.getUserThumbKey(userId), blogId)).toList();
+    }
+
+    /**
+     * 用户对这篇博文已有的点赞记录所在的位置(取消点赞、回滚时使用, 不分配序号), 位图布局中博文没有序号时返回 null, 表示一定没有点赞
+     */
+    public ThumbSlot findSlot(String userId, long blogId) {
+        return this.findSlots(userId, List.of(blogId)).get(0);
+    }
+
+    /**
+     * 批量查询用户对这些博文已有的点赞记录所在的位置, 与 blogIds 一一对应, 没有位置的为 null
+     */
+    public List<ThumbSlot> findSlots(String userId, List<Long> blogIds) {
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            return blogOrdinalIndex.find(blogIds).stream().map(ordinal -> ordinal == null ? null : this.bitmapSlot(userId, ordinal)).toList();
+        }
+        return this.thumbSlots(userId, blogIds);
+    }
+
+    /**
+     * 用户的所有点赞记录键(分桶布局为桶数以内的桶, 位图布局为块集合中记录的块)
+     */
+    public List<String> keys(String userId) {
+        if (layout == ThumbLayoutEnum.FLAT) {
+            return List.of(RedisKeyUtil.getUserThumbKey(userId));
+        }
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            return this.chunks(userId).stream().map(chunk -> RedisKeyUtil.getUserThumbBitmapKey(userId, chunk)).toList();
+        }
+        int buckets = this.bucketCount(userId);
+        List<String> keys = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            keys.add(RedisKeyUtil.getUserThumbBucketKey(userId, bucket));
+        }
+        return keys;
+    }
+
+    /**
+     * 确认点赞的 Lua 脚本(携带临时键值对), 参数为 userId, blogId, slot.field
+     */
+    public RedisScript<Long> thumbScript() {
+        return switch (layout) {
+            case FLAT -> LuaScriptConstant.THUMB_SCRIPT;
+            case BUCKETED -> LuaScriptConstant.THUMB_BUCKETED_SCRIPT;
+            case BITMAP -> LuaScriptConstant.THUMB_BITMAP_SCRIPT;
+        };
+    }
+
+    /**
+     * 取消点赞的 Lua 脚本(携带临时键值对), 参数为 userId, blogId, slot.field
+     */
+    public RedisScript<Long> unthumbScript() {
+        return switch (layout) {
+            case FLAT -> LuaScriptConstant.UNTHUMB_SCRIPT;
+            case BUCKETED -> LuaScriptConstant.UNTHUMB_BUCKETED_SCRIPT;
+            case BITMAP -> LuaScriptConstant.UNTHUMB_BITMAP_SCRIPT;
+        };
+    }
+
+    /**
+     * 批量确认/取消点赞的 Lua 脚本(不携带临时键值对), 每一项的键为 slot.key, 参数为 "操作类型, slot.field" 依次排列, 操作类型由 batchOperation() 得到
+     */
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> batchScript() {
+        return switch (layout) {
+            case FLAT -> LuaScriptConstant.THUMB_BATCH_SCRIPT_MQ;
+            case BUCKETED -> LuaScriptConstant.THUMB_BATCH_BUCKETED_SCRIPT_MQ;
+            case BITMAP -> LuaScriptConstant.THUMB_BATCH_BITMAP_SCRIPT_MQ;
+        };
+    }
+
+    /**
+     * 批量脚本中的操作类型, 取 ThumbTypeEnum 的值(确认点赞为 1, 取消点赞为 -1), 以 Long 传递给点赞键空间的值序列化器
+     */
+    public static long batchOperation(ThumbEventDto.EventType type) {
+        return type == ThumbEventDto.EventType.INCR ? ThumbTypeEnum.INCR.getValue() : ThumbTypeEnum.DECR.getValue();
+    }
+
+    /**
+     * 从当前布局的点赞记录键中解析出 userId, 不是当前布局的点赞记录键(例如 thumb:temp:*)时返回 null
+     */
+    public Long parseUserId(String key) {
+        return parseUserId(key, layout);
+    }
+
+    /**
+     * 用户点赞的博文个数
+     */
+    public long count(String userId) {
+        if (layout == ThumbLayoutEnum.BUCKETED) {
+            Long count = thumbRedisTemplate.execute(LuaScriptConstant.COUNT_BUCKETED_SCRIPT, List.of(RedisKeyUtil.getUserThumbKey(userId)));
+            return count == null ? 0 : count;
+        }
+        List<Object> sizes = layout == ThumbLayoutEnum.BITMAP
+                ? this.pipelined(userId, (connection, key) -> connection.stringCommands().bitCount(key))
+                : this.pipelined(userId, (connection, key) -> connection.hashCommands().hLen(key));
+        long count = 0;
+        for (Object size : sizes) {
+            count += (Long) size;
+        }
+        return count;
+    }
+
+    /**
+     * 用户点赞的所有博文
+     */
+    @SuppressWarnings("unchecked")
+    public LongHashSet blogIds(String userId) {
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            List<Long> chunkList = this.chunks(userId);
+            List<Object> chunks = chunkList.isEmpty() ? List.of() : thumbRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long chunk : chunkList) {
+                    connection.stringCommands().get(bytes(RedisKeyUtil.getUserThumbBitmapKey(userId, chunk)));
+                }
+                return null;
+            }, BYTES);
+            List<Long> ordinals = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                ordinals(chunkList.get(i) * bitmapChunkBits, (byte[]) chunks.get(i), ordinals);
+            }
+            LongHashSet blogIds = new LongHashSet(ordinals.size());
+            blogOrdinalIndex.blogIds(ordinals).forEach(blogIds::add);
+            return blogIds;
+        }
+        if (layout == ThumbLayoutEnum.BUCKETED) {
+            List<Object> fields = thumbRedisTemplate.execute(LuaScriptConstant.BLOG_IDS_BUCKETED_SCRIPT, List.of(RedisKeyUtil.getUserThumbKey(userId)));
+            LongHashSet blogIds = new LongHashSet(fields == null ? 0 : fields.size());
+            if (fields != null) {
+                fields.forEach(blogId -> blogIds.add(((Number) blogId).longValue()));
+            }
+            return blogIds;
+        }
+        Set<String> fields = (Set<String>) this.pipelined(userId, (connection, key) -> connection.hashCommands().hKeys(key)).get(0);
+        LongHashSet blogIds = new LongHashSet(fields.size());
+        for (String blogId : fields) {
+            blogIds.add(Long.parseLong(blogId));
+        }
+        return blogIds;
+    }
+
+    /**
+     * 批量判断用户是否点赞了这些博文, 与 blogIds 一一对应(平铺布局执行 HMGET, 分桶布局在脚本中逐个 HEXISTS, 位图布局按块分组后流水线执行 BITFIELD GET)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Boolean> hasThumb(String userId, List<Long> blogIds) {
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            return this.hasThumbInBitmap(userId, blogIds);
+        }
+        if (layout == ThumbLayoutEnum.BUCKETED) {
+            List<Object> results = blogIds.isEmpty() ? List.of() : thumbRedisTemplate.execute(LuaScriptConstant.HAS_THUMB_BUCKETED_SCRIPT, List.of(RedisKeyUtil.getUserThumbKey(userId)), blogIds.toArray());
+            return results.stream().map(result -> ((Number) result).longValue() == 1L).toList();
+        }
+        Map<String, List<Long>> groups = this.groupByKey(userId, blogIds);
+        List<Object> results = thumbRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, List<Long>> group : groups.entrySet()) {
+                connection.hashCommands().hMGet(bytes(group.getKey()), group.getValue().stream().map(blogId -> bytes(blogId.toString())).toArray(byte[][]::new));
+            }
+            return null;
+        }, STRING);
+
+        Map<Long, Boolean> hasThumb = new HashMap<>();
+        int index = 0;
+        for (List<Long> group : groups.values()) {
+            List<String> values = (List<String>) results.get(index++);
+            for (int i = 0; i < group.size(); i++) {
+                hasThumb.put(group.get(i), values.get(i) != null);
+            }
+        }
+        return blogIds.stream().map(hasThumb::get).toList();
+    }
+
+    /**
+     * 按所在的键对博文分组(保持每组内的原有顺序, 只适用于平铺布局, 其余布局的键需要读取桶数或者序号才能确定)
+     */
+    public Map<String, List<Long>> groupByKey(String userId, List<Long> blogIds) {
+        if (layout != ThumbLayoutEnum.FLAT) {
+            throw new IllegalStateException(layout.getValue() + " 布局不能直接按博文确定哈希键, 请使用 hasThumb()");
+        }
+        return blogIds.isEmpty() ? Map.of() : Map.of(RedisKeyUtil.getUserThumbKey(userId), blogIds);
+    }
+
+    /**
+     * 把其他布局的点赞记录键迁移到当前布局, 返回迁移的键数
+     */
+    public long migrate() {
+        long startTime = System.currentTimeMillis();
+        long migrated = 0;
+        try (Cursor<String> cursor = thumbRedisTemplate.scan(ScanOptions.scanOptions().match(ThumbConstant.USER_THUMB_KEY_PREFIX + "*").count(1000).build())) {
+            while (cursor.hasNext()) {
+                String oldKey = cursor.next();
+                if (layout == ThumbLayoutEnum.BITMAP && parseUserId(oldKey, layout) != null) {
+                    // 块集合之前写入的位图块补记到块集合中(重复执行没有影响)
+                    thumbRedisTemplate.opsForSet().add(RedisKeyUtil.getUserThumbBitmapChunksKey(parseUserId(oldKey, layout).toString()), chunkOf(oldKey));
+                    continue;
+                }
+                if (layout == ThumbLayoutEnum.BUCKETED && parseUserId(oldKey, layout) != null) {
+                    // 之前按固定桶数写入的桶中不属于该桶的记录重新写入(扫描过的桶只剩下正确的记录, 之后的分裂也保持这一点, 重复执行没有影响)
+                    migrated += this.rebucket(parseUserId(oldKey, layout).toString(), oldKey);
+                    continue;
+                }
+                for (ThumbLayoutEnum other : ThumbLayoutEnum.values()) {
+                    Long userId = other == layout ? null : parseUserId(oldKey, other);
+                    if (userId == null) {
+                        continue;
+                    }
+                    this.write(userId.toString(), this.read(oldKey, other));
+                    thumbRedisTemplate.delete(oldKey);
+                    if (other == ThumbLayoutEnum.BITMAP) {
+                        thumbRedisTemplate.delete(RedisKeyUtil.getUserThumbBitmapChunksKey(userId.toString()));
+                    }
+                    if (other == ThumbLayoutEnum.BUCKETED) {
+                        thumbRedisTemplate.delete(RedisKeyUtil.getUserThumbBucketsKey(userId.toString()));
+                    }
+                    migrated++;
+                    break;
+                }
+            }
+        }
+        log.debug("点赞记录迁移到 {} 布局完成, 迁移 {} 个键, 耗时 {} ms", layout.getValue(), migrated, System.currentTimeMillis() - startTime);
+        return migrated;
+    }
+
+    /**
+     * 读取指定布局的一个点赞记录键中的所有博文
+     */
+    private List<Long> read(String key, ThumbLayoutEnum keyLayout) {
+        if (keyLayout != ThumbLayoutEnum.BITMAP) {
+            return thumbRedisTemplate.<String, Long>opsForHash().keys(key).stream().map(Long::valueOf).toList();
+        }
+        byte[] bits = thumbRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(bytes(key)));
+        List<Long> ordinals = new ArrayList<>();
+        ordinals(chunkOf(key) * bitmapChunkBits, bits, ordinals);
+        return blogOrdinalIndex.blogIds(ordinals);
+    }
+
+    /**
+     * 以当前布局写入用户对这些博文的点赞记录
+     */
+    private void write(String userId, List<Long> blogIds) {
+        if (blogIds.isEmpty()) {
+            return;
+        }
+        if (layout == ThumbLayoutEnum.BITMAP) {
+            List<Long> ordinals = blogOrdinalIndex.assign(blogIds); // 迁移的博文都已经被点赞过, 不需要再确认博文存在
+            thumbRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long ordinal : ordinals) {
+                    connection.stringCommands().setBit(bytes(RedisKeyUtil.getUserThumbBitmapKey(userId, ordinal / bitmapChunkBits)), ordinal % bitmapChunkBits, true);
+                    connection.setCommands().sAdd(bytes(RedisKeyUtil.getUserThumbBitmapChunksKey(userId)), bytes(Long.toString(ordinal / bitmapChunkBits)));
+                }
+                return null;
+            });
+            return;
+        }
+        if (layout == ThumbLayoutEnum.BUCKETED) {
+            // 分桶布局通过批量脚本写入, 由脚本选择桶并在桶满时分裂
+            String base = RedisKeyUtil.getUserThumbKey(userId);
+            for (int from = 0; from < blogIds.size(); from += MIGRATE_BATCH_SIZE) {
+                List<Long> batch = blogIds.subList(from, Math.min(from + MIGRATE_BATCH_SIZE, blogIds.size()));
+                List<Object> args = new ArrayList<>(batch.size() * 2);
+                for (Long blogId : batch) {
+                    args.add(batchOperation(ThumbEventDto.EventType.INCR));
+                    args.add(blogId);
+                }
+                thumbRedisTemplate.execute(LuaScriptConstant.THUMB_BATCH_BUCKETED_SCRIPT_MQ, Collections.nCopies(batch.size(), base), args.toArray());
+            }
+            return;
+        }
+        Map<String, Long> fields = new HashMap<>();
+        for (Long blogId : blogIds) {
+            fields.put(blogId.toString(), 1L);
+        }
+        thumbRedisTemplate.opsForHash().putAll(RedisKeyUtil.getUserThumbKey(userId), fields);
+    }
+
+    /**
+     * 分桶布局: 把桶中按当前桶数不属于该桶的记录重新写入后再从该桶删除, 返回是否移动过记录
+     */
+    private long rebucket(String userId, String key) {
+        int buckets = this.bucketCount(userId);
+        int current = Integer.parseInt(key.substring(key.lastIndexOf(':') + 1));
+        List<Long> misplaced = this.read(key, ThumbLayoutEnum.BUCKETED).stream().filter(blogId -> bucket(blogId, buckets) != current).toList();
+        if (misplaced.isEmpty()) {
+            return 0;
+        }
+        this.write(userId, misplaced);
+        thumbRedisTemplate.opsForHash().delete(key, misplaced.stream().map(String::valueOf).toArray());
+        return 1;
+    }
+
+    /**
+     * 分桶布局: 用户当前的桶数(不存在时为 1)
+     */
+    private int bucketCount(String userId) {
+        Long buckets = thumbRedisTemplate.opsForValue().get(RedisKeyUtil.getUserThumbBucketsKey(userId));
+        return buckets == null ? 1 : buckets.intValue();
+    }
+
+    /**
+     * 位图布局: 按块分组后流水线执行 BITFIELD GET u1, 没有序号的博文一定没有被点赞过
+     */
+    @SuppressWarnings("unchecked")
+    private List<Boolean> hasThumbInBitmap(String userId, List<Long> blogIds) {
+        List<Long> ordinals = blogOrdinalIndex.find(blogIds);
+        Map<String, List<Long>> groups = new LinkedHashMap<>(); // 键 -> 块内的位偏移
+        for (Long ordinal : ordinals) {
+            if (ordinal != null) {
+                groups.computeIfAbsent(RedisKeyUtil.getUserThumbBitmapKey(userId, ordinal / bitmapChunkBits), k -> new ArrayList<>()).add(ordinal % bitmapChunkBits);
+            }
+        }
+        List<Object> results = groups.isEmpty() ? List.of() : thumbRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, List<Long>> group : groups.entrySet()) {
+                BitFieldSubCommands commands = BitFieldSubCommands.create();
+                for (Long offset : group.getValue()) {
+                    commands = commands.get(BitFieldSubCommands.BitFieldType.unsigned(1)).valueAt(offset);
+                }
+                connection.stringCommands().bitField(bytes(group.getKey()), commands);
+            }
+            return null;
+        }, STRING);
+
+        Map<Long, Boolean> liked = new HashMap<>(); // 序号 -> 是否点赞
+        int index = 0;
+        for (Map.Entry<String, List<Long>> group : groups.entrySet()) {
+            long base = chunkOf(group.getKey()) * bitmapChunkBits;
+            List<Long> values = (List<Long>) results.get(index++);
+            for (int i = 0; i < group.getValue().size(); i++) {
+                liked.put(base + group.getValue().get(i), values.get(i) == 1L);
+            }
+        }
+        return ordinals.stream().map(ordinal -> ordinal != null && liked.get(ordinal)).toList();
+    }
+
+    /**
+     * 位图布局: 序号所在的块和块内的位偏移
+     */
+    private ThumbSlot bitmapSlot(String userId, long ordinal) {
+        return new ThumbSlot(RedisKeyUtil.getUserThumbBitmapKey(userId, ordinal / bitmapChunkBits), ordinal % bitmapChunkBits);
+    }
+
+    /**
+     * 位图布局: 用户块集合中记录的块(升序)
+     */
+    private List<Long> chunks(String userId) {
+        Set<Long> members = thumbRedisTemplate.opsForSet().members(RedisKeyUtil.getUserThumbBitmapChunksKey(userId));
+        return members == null ? List.of() : members.stream().sorted().toList();
+    }
+
+    /**
+     * 位图布局: 从块键中解析出块号
+     */
+    private static long chunkOf(String key) {
+        return Long.parseLong(key.substring(key.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * 把一个块中为 1 的位转换为序号(Redis 位图的第 0 位是第一个字节的最高位)
+     */
+    private static void ordinals(long base, byte[] bits, List<Long> ordinals) {
+        if (bits == null) {
+            return;
+        }
+        for (int i = 0; i < bits.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                if ((bits[i] & (0x80 >>> bit)) != 0) {
+                    ordinals.add(base + i * 8L + bit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 分桶布局: 桶数为 buckets 时博文所在的桶(线性哈希, 与 LuaScriptConstant.BUCKETED_FUNCTIONS 中的 bucketKey 一致)
+     */
+    static int bucket(long blogId, int buckets) {
+        long level = Integer.highestOneBit(buckets);
+        long hash = bucketHash(blogId);
+        long bucket = hash % (level * 2);
+        return (int) (bucket >= buckets ? hash % level : bucket);
+    }
+
+    /**
+     * 分桶布局: 博文 ID 十进制文本的 SHA-1 的前 32 位(无符号), 与 Lua 中的 tonumber(string.sub(redis.sha1hex(blogId), 1, 8), 16) 相同
+     */
+    static long bucketHash(long blogId) {
+        byte[] digest = SHA1.get().digest(Long.toString(blogId).getBytes(StandardCharsets.US_ASCII));
+        return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+    }
+
+    /**
+     * 对用户的每一个键流水线执行同一个命令, 返回与 keys() 一一对应的结果
+     */
+    private List<Object> pipelined(String userId, KeyCommand command) {
+        List<String> keys = this.keys(userId);
+        return thumbRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                command.execute(connection, bytes(key));
+            }
+            return null;
+        }, STRING);
+    }
+
+    /**
+     * 对单个键执行的流水线命令
+     */
+    private interface KeyCommand {
+        void execute(RedisConnection connection, byte[] key);
+    }
+
+    /**
+     * 从指定布局的点赞记录键中解析出 userId, 键不属于该布局时返回 null
+     */
+    private static Long parseUserId(String key, ThumbLayoutEnum layout) {
+        String prefix = layout == ThumbLayoutEnum.BITMAP ? BITMAP_KEY_PREFIX : ThumbConstant.USER_THUMB_KEY_PREFIX;
+        if (!key.startsWith(prefix)) {
+            return null;
+        }
+        String[] parts = key.substring(prefix.length()).split(":", -1);
+        if (parts.length != (layout == ThumbLayoutEnum.FLAT ? 1 : 2)) {
+            return null;
+        }
+        for (String part : parts) {
+            if (part.isEmpty() || !part.chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+        }
+        return Long.valueOf(parts[0]);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
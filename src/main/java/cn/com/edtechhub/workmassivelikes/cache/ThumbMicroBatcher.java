@@ -0,0 +1,244 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
+import cn.com.edtechhub.workmassivelikes.exception.BusinessException;
+import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
+import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 点赞操作的微批合并(group commit), 把多个线程在极短时间内提交的点赞/取消点赞合并为一次 Lua 脚本调用
+ * 高峰期每个 Tomcat 线程都各自执行一次 Lua 脚本, 每次都要独占一个连接等待一次网络往返, Redis 的吞吐受限于往返次数而不是执行时间:
+ * (1)收集: 调用线程把操作放入队列后等待自己的 future, 合并线程取到第一个操作后最多再等待 windowMicros 微秒或凑满 maxSize 个
+ * (2)执行: 整批操作按提交顺序交给当前键布局的批量脚本一次执行(每项一个 KEYS), 同一个用户的多次操作之间的顺序保持不变
+ * (3)完成: 脚本返回每一项的执行状态, 分别完成对应的 future, 单项出错时只有这一项失败(脚本中逐项 pcall)
+ * (4)超时: 调用线程等待超时时, 还没有被合并线程取走的操作直接作废, 不会再执行; 已经发送给 Redis 的操作不能撤回, 继续等待它的执行结果, 保证返回值与 Redis 中的状态一致
+ * (5)重试: 连接异常时无法知道脚本是否已经执行, 每批携带一个结果键, 用同一个结果键重试一次, 已经执行过时直接取回上次的结果, 不会重复执行
+ * 合并线程执行上一批时到达的操作会自然地积累为下一批, 因此 windowMicros 为 0 时也能在高峰期合并, 低峰期不会增加延迟
+ * 脚本同时访问多个用户的键, 只适用于单机 Redis(集群模式下这些键通常不在同一个槽位)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ThumbMicroBatcher {
+
+    /**
+     * 注入点赞键空间专用的 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Long> thumbRedisTemplate;
+
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 是否开启微批合并, 关闭时在调用线程上直接执行单项脚本
+     */
+    @Value("${thumb.micro-batch.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 取到第一个操作之后最多再等待的微秒数
+     */
+    @Value("${thumb.micro-batch.window-micros:200}")
+    private long windowMicros;
+
+    /**
+     * 每批最多合并的操作个数
+     */
+    @Value("${thumb.micro-batch.max-size:128}")
+    private int maxSize;
+
+    /**
+     * 调用线程等待执行结果的最长毫秒数
+     */
+    @Value("${thumb.micro-batch.timeout-millis:3000}")
+    private long timeoutMillis;
+
+    /**
+     * 等待合并的操作
+     */
+    private final BlockingQueue<Operation> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 合并线程
+     */
+    private Thread flusher;
+
+    /**
+     * 是否正在运行
+     */
+    private volatile boolean running;
+
+    /**
+     * 批次结果在 Redis 中保留的秒数, 只需要覆盖一次重试
+     */
+    private static final long BATCH_RESULT_TTL_SECONDS = 60;
+
+    /**
+     * 一项等待执行的操作, claimed 由合并线程(准备发送)或者调用线程(超时作废)先设置的一方获得
+     */
+    private record Operation(String userThumbKey, ThumbEventDto.EventType type, long field, CompletableFuture<Long> result, AtomicBoolean claimed) {
+    }
+
+    /**
+     * 开启时启动合并线程
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        this.running = true;
+        this.flusher = new Thread(this::loop, "thumb-micro-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        log.debug("点赞操作微批合并已开启, 等待窗口 {} 微秒, 每批最多 {} 个操作", windowMicros, maxSize);
+    }
+
+    /**
+     * 停止合并线程, 执行完已经提交的操作
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(timeoutMillis);
+        List<Operation> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            this.flush(rest);
+        }
+    }
+
+    /**
+     * 执行一项点赞/取消点赞操作, 返回 LuaStatusEnum 的值(点赞时已经点赞、取消时没有点赞返回 FAIL)
+     */
+    public long execute(ThumbKeyLayout.ThumbSlot slot, ThumbEventDto.EventType type) {
+        Operation operation = new Operation(slot.key(), type, slot.field(), new CompletableFuture<>(), new AtomicBoolean());
+        if (!running) {
+            this.flush(List.of(operation));
+        } else {
+            queue.add(operation);
+        }
+        try {
+            try {
+                return operation.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (operation.claimed().compareAndSet(false, true)) {
+                    operation.result().cancel(false); // 还没有被取走, 作废后合并线程会跳过它
+                    throw new BusinessException(CodeBindMessageEnum.TIMEOUT_ERROR, "点赞操作执行超时");
+                }
+                return operation.result().get(); // 已经发送给 Redis, 等待执行结果(由 Redis 客户端的命令超时兜底)
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(CodeBindMessageEnum.SYSTEM_ERROR, "等待点赞操作执行时被中断");
+        }
+    }
+
+    /**
+     * 合并线程: 取到第一个操作后在窗口内继续收集, 然后整批执行
+     */
+    private void loop() {
+        List<Operation> batch = new ArrayList<>(maxSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(windowMicros);
+                while (batch.size() < maxSize) {
+                    queue.drainTo(batch, maxSize - batch.size()); // 先取走已经到达的操作, 不需要等待
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxSize || remaining <= 0) {
+                        break;
+                    }
+                    Operation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.flush(batch);
+                batch.clear();
+            }
+        }
+        // 退出前把已经取出的操作执行完
+        if (!batch.isEmpty()) {
+            this.flush(batch);
+        }
+    }
+
+    /**
+     * 一次 Lua 脚本调用执行整批操作(跳过调用线程已经作废的操作), 分别完成每一项的 future
+     */
+    private void flush(List<Operation> operations) {
+        List<Operation> batch = operations.stream().filter(operation -> operation.claimed().compareAndSet(false, true)).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(batch.size() + 1);
+        Object[] args = new Object[batch.size() * 2 + 1];
+        for (int i = 0; i < batch.size(); i++) {
+            Operation operation = batch.get(i);
+            keys.add(operation.userThumbKey());
+            args[i * 2] = ThumbKeyLayout.batchOperation(operation.type());
+            args[i * 2 + 1] = operation.field();
+        }
+        keys.add(RedisKeyUtil.getThumbBatchResultKey(UUID.randomUUID().toString()));
+        args[batch.size() * 2] = BATCH_RESULT_TTL_SECONDS;
+
+        List<?> results;
+        try {
+            results = thumbRedisTemplate.execute(thumbKeyLayout.batchScript(), keys, args);
+        } catch (RuntimeException e) {
+            log.warn("点赞操作批量执行异常, 使用同一个结果键重试本批 {} 个操作", batch.size(), e);
+            try {
+                results = thumbRedisTemplate.execute(thumbKeyLayout.batchScript(), keys, args);
+            } catch (RuntimeException retry) {
+                // 仍然无法确认本批是否已经执行, 只能让调用方失败, Redis 与 MySQL 之间的差异由对账任务修复
+                log.error("点赞操作批量执行重试失败, 本批 {} 个操作的执行结果未知, 结果键 {}", batch.size(), keys.get(batch.size()), retry);
+                batch.forEach(operation -> operation.result().completeExceptionally(retry));
+                return;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            long result = ((Number) results.get(i)).longValue();
+            if (result == 0) {
+                batch.get(i).result().completeExceptionally(new BusinessException(CodeBindMessageEnum.SYSTEM_ERROR, "点赞操作执行失败"));
+            } else {
+                batch.get(i).result().complete(result);
+            }
+        }
+    }
+
+}
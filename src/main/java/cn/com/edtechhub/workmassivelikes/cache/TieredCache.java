@@ -0,0 +1,464 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.enums.WritePolicyEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 三级缓存(本地 Caffeine -> Redis -> 数据源), 统一各处手写的 "先查本地再查 Redis 再查数据库" 逻辑
+ * (1)读取: 本地未命中时在 Caffeine 的 get(key, loader) 中依次读取 Redis 和数据源, 同一个 key 在本实例上只会有一个线程回源, 读到的结果逐级回填
+ *     Caffeine 已经保证同一个 key 在本实例上只回源一次, 开启请求合并(SingleFlight)并不会进一步减少回源次数, 它带来的是:
+ *     等待的线程有超时时间(Caffeine 的等待没有上限), 加载失败时所有等待的线程一起失败, 不会在锁释放后排队逐个重试
+ * (2)空值: 开启空值缓存后数据源返回 null 也会缓存(本地使用 NULL_VALUE, Redis 使用 NULL_MARKER), 使用单独的较短过期时间, 避免不存在的 key 反复穿透到数据库
+ * (3)写入: 直写(WRITE_THROUGH)先写数据源再更新两级缓存; 回写(WRITE_BEHIND)先更新两级缓存并记录待写入的值, 由 flush() 定时批量写入数据源, 同一个 key 只写最后一次的值
+ * (4)失效: invalidate() 删除本地和 Redis 中的副本, 配置了失效频道时再通过发布订阅通知其他实例删除各自的本地副本
+ *     数据源被绕过缓存直接更新时(例如批量累加点赞数), 更新方必须调用 invalidateAll()/invalidateAllAfterCommit(), 否则各级缓存会一直返回旧值直到过期
+ * (5)统计: 每一级的命中/未命中次数使用 LongAdder 记录, 由定时任务输出
+ * Redis 层和数据源都是可选的: 没有 Redis 层时就是 "本地 -> 数据源" 两级缓存, 数据源本身可以就是 Redis 中的数据结构(例如用户点赞集合)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Slf4j
+public final class TieredCache<K, V> {
+
+    /**
+     * 本地缓存中代表空值的标记
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * Redis 中代表空值的标记
+     */
+    private static final String NULL_MARKER = "__null__";
+
+    /**
+     * 缓存名称, 用于日志和统计
+     */
+    private final String name;
+
+    /**
+     * 一级缓存, 值为 V 或者 NULL_VALUE
+     */
+    private final Cache<K, Object> local;
+
+    /**
+     * Redis 客户端, 没有 Redis 层时为 null
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * key -> Redis 键名
+     */
+    private final Function<K, String> redisKey;
+
+    /**
+     * Redis 层的过期时间
+     */
+    private final Duration redisTtl;
+
+    /**
+     * 空值的过期时间, 为 0 时不缓存空值
+     */
+    private final Duration negativeTtl;
+
+    /**
+     * 从数据源读取
+     */
+    private final Function<K, V> loader;
+
+    /**
+     * 写入数据源, 不支持写入时为 null
+     */
+    private final BiConsumer<K, V> writer;
+
+    /**
+     * 写入策略
+     */
+    private final WritePolicyEnum writePolicy;
+
+    /**
+     * 失效频道, 为 null 时不通知其他实例
+     */
+    private final String invalidateChannel;
+
+    /**
+     * 未命中时的请求合并(只提供等待超时和失败共享), 为 null 时只依赖 Caffeine 对同一个 key 的加载加锁
+     */
+    private final SingleFlight<K, Object> singleFlight;
+
+    /**
+     * 回写模式下尚未写入数据源的值: key -> 最后一次写入的值
+     */
+    private final Map<K, V> pendingWrites = new ConcurrentHashMap<>();
+
+    private final LongAdder localHits = new LongAdder();
+
+    private final LongAdder localMisses = new LongAdder();
+
+    private final LongAdder redisHits = new LongAdder();
+
+    private final LongAdder redisMisses = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder negativeLoads = new LongAdder();
+
+    private TieredCache(Builder<K, V> builder) {
+        this.name = Objects.requireNonNull(builder.name, "缓存名称不能为空");
+        this.loader = Objects.requireNonNull(builder.loader, "数据源不能为空");
+        this.redisTemplate = builder.redisTemplate;
+        this.redisKey = builder.redisKey;
+        this.redisTtl = builder.redisTtl;
+        this.negativeTtl = builder.negativeTtl;
+        this.writer = builder.writer;
+        this.writePolicy = builder.writePolicy;
+        this.invalidateChannel = builder.invalidateChannel;
+        this.singleFlight = builder.loadTimeoutMillis > 0 ? new SingleFlight<>(builder.loadTimeoutMillis) : null;
+
+        long localNanos = builder.localTtl.toNanos();
+        long negativeNanos = Math.min(localNanos, negativeTtl.toNanos());
+        this.local = Caffeine.newBuilder()
+                .maximumSize(builder.maximumSize)
+                .expireAfter(new Expiry<K, Object>() { // 空值使用较短的过期时间, 其余使用本地过期时间
+                    @Override
+                    public long expireAfterCreate(K key, Object value, long currentTime) {
+                        return value == NULL_VALUE ? negativeNanos : localNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Object value, long currentTime, long currentDuration) {
+                        return value == NULL_VALUE ? negativeNanos : localNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+
+        if (invalidateChannel != null) {
+            Function<String, K> keyParser = Objects.requireNonNull(builder.keyParser, "开启失效通知时必须指定 key 的解析方式");
+            builder.listenerContainer.addMessageListener((message, pattern) -> {
+                Object key = builder.redisTemplate.getValueSerializer().deserialize(message.getBody());
+                if (key != null) {
+                    local.invalidate(keyParser.apply(key.toString()));
+                }
+            }, new ChannelTopic(invalidateChannel));
+        }
+    }
+
+    /**
+     * 创建构建器
+     */
+    public static <K, V> Builder<K, V> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    /**
+     * 读取, 数据源中不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+        } else {
+            localMisses.increment();
+            value = singleFlight == null
+                    ? local.get(key, this::loadFromRemote)
+                    : singleFlight.execute(key, () -> local.get(key, this::loadFromRemote));
+        }
+        return value == null || value == NULL_VALUE ? null : (V) value;
+    }
+
+    /**
+     * 写入, 按照写入策略写入数据源
+     */
+    public void put(K key, V value) {
+        Objects.requireNonNull(writer, "缓存 " + name + " 不支持写入");
+        if (writePolicy == WritePolicyEnum.WRITE_THROUGH) {
+            writer.accept(key, value);
+        } else {
+            pendingWrites.put(key, value);
+        }
+        this.writeRedis(key, value, redisTtl);
+        local.put(key, value);
+        this.publish(key);
+    }
+
+    /**
+     * 删除本地和 Redis 中的副本, 并通知其他实例
+     */
+    public void invalidate(K key) {
+        local.invalidate(key);
+        if (redisKey != null) {
+            redisTemplate.delete(redisKey.apply(key));
+        }
+        this.publish(key);
+    }
+
+    /**
+     * 批量删除本地和 Redis 中的副本, 并通知其他实例(例如数据源被绕过缓存批量更新之后), Redis 的删除和通知各只需要一次往返
+     */
+    @SuppressWarnings("unchecked")
+    public void invalidateAll(Collection<K> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        local.invalidateAll(keys);
+        if (redisKey != null) {
+            redisTemplate.delete(keys.stream().map(redisKey).toList());
+        }
+        if (invalidateChannel != null) {
+            RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            byte[] channel = invalidateChannel.getBytes(StandardCharsets.UTF_8);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (K key : keys) {
+                    connection.publish(channel, serializer.serialize(key.toString()));
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 在当前事务提交之后再批量失效(提交之前失效的话, 其他线程可能马上又把未提交前的旧值加载回缓存), 没有事务时直接失效
+     */
+    public void invalidateAllAfterCommit(Collection<K> keys) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.invalidateAll(keys);
+            return;
+        }
+        List<K> copy = List.copyOf(keys);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateAll(copy);
+            }
+        });
+    }
+
+    /**
+     * 只删除本实例的本地副本(例如热点博文冷却后释放内存)
+     */
+    public void invalidateLocal(K key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * 是否配置了回写模式的写入(只有这样的缓存才有需要定时写入数据源的值)
+     */
+    public boolean isWriteBehind() {
+        return writer != null && writePolicy == WritePolicyEnum.WRITE_BEHIND;
+    }
+
+    /**
+     * 把回写模式下尚未写入的值批量写入数据源, 返回本次写入的个数
+     */
+    public synchronized int flush() {
+        int flushed = 0;
+        for (Map.Entry<K, V> entry : pendingWrites.entrySet()) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            try {
+                writer.accept(key, value);
+            } catch (RuntimeException e) {
+                log.warn("缓存 {} 回写 {} 失败, 下一个周期重试", name, key, e);
+                continue;
+            }
+            pendingWrites.remove(key, value); // 写入期间又被更新过的值保留到下一个周期
+            flushed++;
+        }
+        if (flushed > 0) {
+            log.debug("缓存 {} 回写数据源 {} 条", name, flushed);
+        }
+        return flushed;
+    }
+
+    /**
+     * 各级的累计命中/未命中次数
+     */
+    public TieredCacheStats stats() {
+        long coalesced = singleFlight == null ? 0 : singleFlight.sharedCount();
+        return new TieredCacheStats(name, localHits.sum(), localMisses.sum(), redisHits.sum(), redisMisses.sum(), loads.sum(), negativeLoads.sum(), coalesced, pendingWrites.size());
+    }
+
+    /**
+     * 本地未命中时依次读取 Redis 和数据源, 返回 null 时本地不缓存
+     */
+    private Object loadFromRemote(K key) {
+        V pending = pendingWrites.get(key); // 回写尚未完成时数据源中还是旧值
+        if (pending != null) {
+            return pending;
+        }
+
+        if (redisKey != null) {
+            Object cached = redisTemplate.opsForValue().get(redisKey.apply(key));
+            if (cached != null) {
+                redisHits.increment();
+                return NULL_MARKER.equals(cached) ? NULL_VALUE : cached;
+            }
+            redisMisses.increment();
+        }
+
+        V value = loader.apply(key);
+        loads.increment();
+        if (value != null) {
+            this.writeRedis(key, value, redisTtl);
+            return value;
+        }
+        negativeLoads.increment();
+        if (negativeTtl.isZero()) {
+            return null;
+        }
+        this.writeRedis(key, NULL_MARKER, negativeTtl);
+        return NULL_VALUE;
+    }
+
+    /**
+     * 写入 Redis 层
+     */
+    private void writeRedis(K key, Object value, Duration ttl) {
+        if (redisKey != null) {
+            redisTemplate.opsForValue().set(redisKey.apply(key), value, ttl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 通知其他实例删除本地副本
+     */
+    private void publish(K key) {
+        if (invalidateChannel != null) {
+            redisTemplate.convertAndSend(invalidateChannel, key.toString());
+        }
+    }
+
+    /**
+     * 三级缓存构建器
+     */
+    public static final class Builder<K, V> {
+
+        private final String name;
+
+        private long maximumSize = 1000;
+
+        private Duration localTtl = Duration.ofSeconds(5);
+
+        private RedisTemplate<String, Object> redisTemplate;
+
+        private Function<K, String> redisKey;
+
+        private Duration redisTtl = Duration.ofSeconds(60);
+
+        private Duration negativeTtl = Duration.ZERO;
+
+        private Function<K, V> loader;
+
+        private BiConsumer<K, V> writer;
+
+        private WritePolicyEnum writePolicy = WritePolicyEnum.WRITE_THROUGH;
+
+        private RedisMessageListenerContainer listenerContainer;
+
+        private String invalidateChannel;
+
+        private Function<String, K> keyParser;
+
+        private long loadTimeoutMillis;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 本地缓存的最大个数和过期时间
+         */
+        public Builder<K, V> local(long maximumSize, Duration ttl) {
+            this.maximumSize = maximumSize;
+            this.localTtl = ttl;
+            return this;
+        }
+
+        /**
+         * 开启 Redis 层
+         */
+        public Builder<K, V> redis(RedisTemplate<String, Object> redisTemplate, Function<K, String> redisKey, Duration ttl) {
+            this.redisTemplate = redisTemplate;
+            this.redisKey = redisKey;
+            this.redisTtl = ttl;
+            return this;
+        }
+
+        /**
+         * 开启空值缓存
+         */
+        public Builder<K, V> negativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+            return this;
+        }
+
+        /**
+         * 数据源
+         */
+        public Builder<K, V> loader(Function<K, V> loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        /**
+         * 写入数据源的方式和策略
+         */
+        public Builder<K, V> writer(BiConsumer<K, V> writer, WritePolicyEnum writePolicy) {
+            this.writer = writer;
+            this.writePolicy = writePolicy;
+            return this;
+        }
+
+        /**
+         * 通过 Redis 发布订阅通知其他实例删除本地副本, keyParser 把消息内容还原为 key
+         */
+        public Builder<K, V> broadcast(RedisTemplate<String, Object> redisTemplate, RedisMessageListenerContainer listenerContainer, String channel, Function<String, K> keyParser) {
+            this.redisTemplate = redisTemplate;
+            this.listenerContainer = listenerContainer;
+            this.invalidateChannel = channel;
+            this.keyParser = keyParser;
+            return this;
+        }
+
+        /**
+         * 开启未命中时的请求合并, 等待其他线程加载的最长毫秒数
+         */
+        public Builder<K, V> singleFlight(long loadTimeoutMillis) {
+            this.loadTimeoutMillis = loadTimeoutMillis;
+            return this;
+        }
+
+        public TieredCache<K, V> build() {
+            return new TieredCache<>(this);
+        }
+
+    }
+
+}
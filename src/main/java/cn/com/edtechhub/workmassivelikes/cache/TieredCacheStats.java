@@ -0,0 +1,9 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+/**
+ * 三级缓存各级的累计命中/未命中次数
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public record TieredCacheStats(String name, long localHits, long localMisses, long redisHits, long redisMisses, long loads, long negativeLoads, long coalesced, int pendingWrites) {
+}
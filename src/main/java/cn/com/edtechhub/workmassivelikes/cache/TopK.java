@@ -1,7 +1,6 @@
 package cn.com.edtechhub.workmassivelikes.cache;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * TopK 算法声明
@@ -15,15 +14,23 @@ public interface TopK {
      */
     AddResult add(String key, int increment);
 
+    /**
+     * 以 long 类型的 key 添加/更新元素, 只返回是否为热点 key, 与 add(String.valueOf(key), increment) 等价
+     * 默认实现会把 key 转为字符串, 具体实现可以覆盖此方法以避免在热路径上分配对象
+     */
+    default boolean add(long key, int increment) {
+        return add(Long.toString(key), increment).isHotKey();
+    }
+
     /**
      * 这个方法返回当前 TopK 数据结构中按某种排序方式排列的前 K 个元素列表
      */
     List<Item> list();
 
     /**
-     * 包含从 TopK 数据结构中不符合前 k 个条件后被踢出的元素阻塞队列
+     * 包含从 TopK 数据结构中不符合前 k 个条件后被踢出的元素流(有界, 满时丢弃最旧的元素)
      */
-    BlockingQueue<Item> expelled();
+    ExpelledStream expelled();
 
     /**
      * 元素随着时间的流逝需要逐渐不再活跃的全局热度降低方法
@@ -35,4 +42,9 @@ public interface TopK {
      */
     long total();
 
+    /**
+     * 把最小计数降低为构造时的 1/divisor(至少为 1), 集群中的多个实例分摊同一个 key 的流量时, 按存活的实例数降低本地的门槛
+     */
+    void setMinCountDivisor(int divisor);
+
 }
@@ -0,0 +1,122 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * 用户点赞集合的近端缓存
+ * 博文列表每次都需要对 thumb:{userId} 执行一次 HMGET 才能得到点赞情况, 而用户点赞集合的变化频率远低于浏览频率
+ * 因此在本地缓存活跃用户的完整点赞集合(userId -> LongHashSet), 大部分列表请求不再访问 Redis:
+ * (1)加载: 缓存未命中时使用 HKEYS 读取整个点赞集合(分桶布局时流水线读取每一个桶), 点赞数超过 maxBlogs 的用户只记录一个标记, 调用方回退为 HMGET
+ * (2)失效: 任意实例修改 thumb:{userId} 之后先失效本地缓存, 再通过 Redis 发布订阅广播 userId, 所有实例收到后失效各自的缓存
+ * (3)兜底: 发布订阅的消息可能因为连接断开而丢失, 因此缓存本身还有写入后过期时间, 最多在 expireSeconds 秒后恢复一致
+ * 加载是在 Caffeine 的 get(key, loader) 中进行的, 同一个 key 的失效会等待正在进行的加载完成后再执行, 不会把失效前读到的旧集合留在缓存中
+ * 缓存本身是一个没有 Redis 层的 TieredCache(本地 -> thumb:{userId}), 点赞集合只由 Lua 脚本写入, 这里不需要写入策略
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class UserThumbNearCache {
+
+    /**
+     * 点赞数过多不缓存的标记
+     */
+    private static final LongHashSet TOO_LARGE = new LongHashSet();
+
+    /**
+     * 注入 Redis 客户端
+     */
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 注入 Redis 消息监听容器
+     */
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 最多缓存的用户个数
+     */
+    @Value("${cache.thumb-near-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    /**
+     * 写入后的过期秒数, 也是丢失失效消息时的最大不一致时间
+     */
+    @Value("${cache.thumb-near-cache.expire-seconds:60}")
+    private long expireSeconds;
+
+    /**
+     * 点赞数超过此值的用户不缓存
+     */
+    @Value("${cache.thumb-near-cache.max-blogs:10000}")
+    private long maxBlogs;
+
+    /**
+     * userId -> 已经点赞的 blogId 集合(加载后不再修改, 只整体失效)
+     */
+    private TieredCache<String, LongHashSet> cache;
+
+    /**
+     * 创建本地缓存, 并订阅失效频道
+     */
+    @PostConstruct
+    public void init() {
+        this.cache = TieredCache.<String, LongHashSet>builder("user-thumb")
+                .local(maximumSize, Duration.ofSeconds(expireSeconds))
+                .loader(this::load)
+                .broadcast(redisTemplate, redisMessageListenerContainer, ThumbConstant.USER_THUMB_INVALIDATE_CHANNEL, Function.identity())
+                .build();
+    }
+
+    /**
+     * 获取用户已经点赞的 blogId 集合, 用户点赞数过多不缓存时返回 null
+     */
+    public LongHashSet get(String userId) {
+        LongHashSet likedBlogs = cache.get(userId);
+        return likedBlogs == TOO_LARGE ? null : likedBlogs;
+    }
+
+    /**
+     * 用户的点赞集合在 Redis 中已经被修改, 失效本实例的缓存(通知其他实例由 ThumbChangeBroadcaster 与布隆过滤器的广播合并发送)
+     */
+    void invalidateLocal(String userId) {
+        cache.invalidateLocal(userId);
+    }
+
+    /**
+     * 各级的累计命中/未命中次数
+     */
+    public TieredCacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 从 Redis 中加载用户的点赞集合
+     */
+    private LongHashSet load(String userId) {
+        if (thumbKeyLayout.count(userId) > maxBlogs) {
+            log.debug("用户 {} 点赞数过多, 不使用近端缓存", userId);
+            return TOO_LARGE;
+        }
+        return thumbKeyLayout.blogIds(userId);
+    }
+
+}
@@ -0,0 +1,388 @@
+package cn.com.edtechhub.workmassivelikes.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TopK 算法实现(滑动窗口版本的 HeavyKeeper)
+ * 原来的 HeavyKeeper 依赖定时任务每 20 s 把所有桶减半, 这会遍历全部桶造成延迟毛刺, 并且 "热点" 的含义变成了 "指数加权的过去是否热"
+ * 这里改为维护一个由 windows 个子草图组成的环, 每个子草图只记录 windowMillis 毫秒内的流量:
+ * (1)写入: 只写入最新的子草图
+ * (2)计数: 元素的计数为它在所有子草图中估计值之和, 即最近 windows * windowMillis 毫秒内的计数
+ * (3)过期: 时间跨过窗口边界时只需要把环整体后移一格, 最旧的子草图直接丢弃, 不需要遍历任何桶, 被丢弃的子草图会在虚拟线程中异步清空后留作下一次复用
+ * 只有当前窗口会被写入, 空闲超过整个跨度时旧的当前窗口也会过期, 此时读到旧环的请求线程可能仍在写入它, 因此它先隔离一个窗口, 下一次轮转时才清空复用
+ * 空闲的子草图最多保留 MAX_SPARES 个: 正常每次只轮转一格, 取走一个再异步清空归还一个, 轮转时不需要在锁内分配大数组
+ * 只有空闲超过整个跨度后的那一次轮转才需要一次性替换多个窗口, 此时不足的子草图在锁内分配, 清空后超出上限的直接丢弃, 不会为这种少见的情况常驻 windows 份内存
+ * 因此本实现不再需要 fading() 衰减, fading() 只会触发一次窗口轮转检查
+ * 保存快照时记录当前窗口编号, 恢复时按经过的窗口数把环后移, 已经过期的窗口直接丢弃, 因此年龄衰减同样依靠窗口轮转完成
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class WindowedTopK implements TopK, Snapshottable {
+
+    /**
+     * 最多保留的空闲子草图个数
+     */
+    private static final int MAX_SPARES = 2;
+
+    /**
+     * 子草图组成的环, ring[0] 为当前窗口, ring[i] 为 i 个窗口之前的窗口(不可变数组, 轮转时整体替换)
+     */
+    private volatile PackedHeavyKeeper[] ring;
+
+    /**
+     * 当前窗口的编号(当前时间 / windowMillis)
+     */
+    private volatile long currentEpoch;
+
+    /**
+     * 已经清空可以复用的子草图
+     */
+    private final ArrayDeque<PackedHeavyKeeper> spares;
+
+    /**
+     * 隔离中的子草图(过期时仍是当前窗口, 可能还有请求线程在写入), 下一次轮转时再清空
+     */
+    private PackedHeavyKeeper quarantined;
+
+    /**
+     * 轮转锁, 保护 ring 的替换、spares 和 quarantined
+     */
+    private final Object rotateLock = new Object();
+
+    /**
+     * 每个窗口的毫秒数
+     */
+    private final long windowMillis;
+
+    /**
+     * 带索引的最小堆, 用于存储整个窗口跨度内的 TopK 元素
+     */
+    private final IndexedMinHeap minHeap;
+
+    /**
+     * 被挤出的元素流
+     */
+    private final ExpelledStream expelledStream;
+
+    /**
+     * 最小计数, 当元素在窗口跨度内的计数小于此值时, 不会进入 TopK
+     */
+    private volatile int minCount;
+
+    /**
+     * 构造时传入的最小计数, minCount 由它按 setMinCountDivisor() 的除数降低得到
+     */
+    private final int baseMinCount;
+
+    /**
+     * 子草图的参数
+     */
+    private final int width;
+
+    private final int depth;
+
+    private final double decay;
+
+    /**
+     * 初始化一个 WindowedTopK 实例
+     *
+     * @param windows      窗口个数, 整个统计跨度为 windows * windowMillis 毫秒
+     * @param windowMillis 每个窗口的毫秒数
+     */
+    public WindowedTopK(int k, int width, int depth, double decay, int minCount, int windows, long windowMillis) {
+        this.width = width;
+        this.depth = depth;
+        this.decay = decay;
+        this.minCount = minCount;
+        this.baseMinCount = minCount;
+        this.windowMillis = windowMillis;
+        this.minHeap = new IndexedMinHeap(k);
+        this.expelledStream = new ExpelledStream(ExpelledStream.DEFAULT_CAPACITY);
+        this.spares = new ArrayDeque<>();
+
+        PackedHeavyKeeper[] initial = new PackedHeavyKeeper[windows];
+        for (int i = 0; i < windows; i++) {
+            initial[i] = newSketch();
+        }
+        this.spares.add(newSketch()); // 预留一个空草图, 保证正常轮转一格时不需要在请求线程中分配大数组
+        this.ring = initial;
+        this.currentEpoch = System.currentTimeMillis() / windowMillis;
+    }
+
+    @Override
+    public AddResult add(String key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        int windowCount = increase(keyHash, increment);
+
+        // 如果本元素的计数小于最小计数, 则表示此元素不会进入 TopK, 直接返回
+        if (windowCount < minCount) {
+            return new AddResult(null, false, null);
+        }
+
+        synchronized (minHeap) {
+            if (minHeap.update(keyHash, key, windowCount)) {
+                return new AddResult(null, true, key);
+            }
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, key, windowCount);
+                return new AddResult(null, true, key);
+            }
+            if (windowCount >= minHeap.minCount()) {
+                Item expelled = minHeap.replaceMin(keyHash, key, windowCount);
+                expelledStream.offer(expelled);
+                return new AddResult(expelled.key(), true, key);
+            }
+            return new AddResult(null, false, key);
+        }
+    }
+
+    @Override
+    public boolean add(long key, int increment) {
+        long keyHash = KeyHash.hash(key);
+        int windowCount = increase(keyHash, increment);
+        if (windowCount < minCount) {
+            return false;
+        }
+        synchronized (minHeap) {
+            // 只有 key 新进入堆时才需要分配字符串和节点
+            if (minHeap.update(keyHash, key, windowCount)) {
+                return true;
+            }
+            if (!minHeap.isFull()) {
+                minHeap.insert(keyHash, Long.toString(key), windowCount);
+                return true;
+            }
+            if (windowCount >= minHeap.minCount()) {
+                expelledStream.offer(minHeap.replaceMin(keyHash, Long.toString(key), windowCount));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<Item> list() {
+        rotateIfNeeded();
+        Item[] snapshot;
+        synchronized (minHeap) {
+            snapshot = minHeap.snapshot();
+        }
+        return IndexedMinHeap.sortDescending(snapshot);
+    }
+
+    /**
+     * 返回最近 lastMillis 毫秒内的 TopK 列表(按窗口粒度向上取整, 最多为整个跨度), 候选元素为当前整个跨度内的 TopK 元素
+     */
+    public List<Item> list(long lastMillis) {
+        PackedHeavyKeeper[] window = rotateIfNeeded();
+        int count = (int) Math.min(window.length, Math.max(1, (lastMillis + windowMillis - 1) / windowMillis));
+
+        Item[] snapshot;
+        synchronized (minHeap) {
+            snapshot = minHeap.snapshot();
+        }
+
+        // 在锁外重新统计每个候选元素在最近 count 个窗口内的计数
+        for (int i = 0; i < snapshot.length; i++) {
+            long keyHash = KeyHash.hash(snapshot[i].key());
+            int sum = 0;
+            for (int j = 0; j < count; j++) {
+                sum += window[j].estimate(keyHash);
+            }
+            snapshot[i] = new Item(snapshot[i].key(), sum);
+        }
+        return IndexedMinHeap.sortDescending(snapshot);
+    }
+
+    @Override
+    public ExpelledStream expelled() {
+        return expelledStream;
+    }
+
+    @Override
+    public void fading() {
+        rotateIfNeeded(); // 过期依靠窗口轮转完成, 这里不再需要对所有桶减半
+    }
+
+    @Override
+    public void setMinCountDivisor(int divisor) {
+        this.minCount = Math.max(1, baseMinCount / Math.max(1, divisor));
+    }
+
+    @Override
+    public long total() {
+        long total = 0;
+        for (PackedHeavyKeeper sketch : ring) {
+            total += sketch.total();
+        }
+        return total;
+    }
+
+    @Override
+    public void saveSnapshot(Path file) throws IOException {
+        PackedHeavyKeeper[] window;
+        long epoch;
+        Item[] items;
+        synchronized (rotateLock) {
+            window = ring;
+            epoch = currentEpoch;
+        }
+        synchronized (minHeap) {
+            items = minHeap.snapshot();
+        }
+        long[][] arrays = new long[window.length + 1][];
+        arrays[0] = new long[]{epoch};
+        for (int i = 0; i < window.length; i++) {
+            arrays[i + 1] = window[i].slots();
+        }
+        SnapshotFile.write(file, layout(window.length), arrays, items);
+    }
+
+    @Override
+    public boolean loadSnapshot(Path file, long halfLifeMillis) throws IOException {
+        synchronized (rotateLock) {
+            PackedHeavyKeeper[] window = ring;
+            SnapshotFile.Content content = SnapshotFile.read(file, layout(window.length));
+            if (content == null) {
+                return false;
+            }
+
+            // 快照中的第 i 个窗口在经过 shift 个窗口之后变为第 i + shift 个窗口, 超出环的窗口已经过期
+            long shift = Math.max(0, currentEpoch - content.arrays()[0][0]);
+            for (int i = 0; i + shift < window.length; i++) {
+                window[(int) (i + shift)].restoreSlots(content.arrays()[i + 1], 0);
+            }
+
+            synchronized (minHeap) {
+                minHeap.clear();
+                for (Item item : content.items()) {
+                    if (!minHeap.isFull()) {
+                        minHeap.insert(KeyHash.hash(item.key()), item.key(), item.count());
+                    }
+                }
+            }
+            rebuildHeap(window); // 按恢复后的窗口重新计算计数, 已经过期的元素会被移出
+            return true;
+        }
+    }
+
+    /**
+     * 写入当前窗口, 并累加其余窗口中的估计值得到整个跨度内的计数
+     */
+    private int increase(long keyHash, int increment) {
+        PackedHeavyKeeper[] window = rotateIfNeeded();
+        int windowCount = window[0].increase(keyHash, increment);
+        for (int i = 1; i < window.length; i++) {
+            windowCount += window[i].estimate(keyHash);
+        }
+        return windowCount;
+    }
+
+    /**
+     * 如果当前时间已经进入新的窗口则进行轮转, 返回最新的环
+     */
+    private PackedHeavyKeeper[] rotateIfNeeded() {
+        long epoch = System.currentTimeMillis() / windowMillis;
+        if (epoch == currentEpoch) {
+            return ring; // 绝大多数调用都只会走到这里
+        }
+        synchronized (rotateLock) {
+            if (epoch > currentEpoch) {
+                rotate(epoch);
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * 把环后移 epoch - currentEpoch 格(最多整个环), 移出的子草图异步清空后留作复用(最多 MAX_SPARES 个), 然后按新的环重算最小堆中的计数
+     */
+    private void rotate(long epoch) {
+        PackedHeavyKeeper[] old = ring;
+        int steps = (int) Math.min(epoch - currentEpoch, old.length);
+
+        PackedHeavyKeeper[] next = new PackedHeavyKeeper[old.length];
+        for (int i = 0; i < steps; i++) {
+            PackedHeavyKeeper spare = spares.poll();
+            next[i] = spare != null ? spare : newSketch(); // 只有一次轮转多格或者上一次的异步清空还没有完成时才会分配
+        }
+        System.arraycopy(old, 0, next, steps, old.length - steps);
+
+        // 上一次隔离的子草图已经过了一整个窗口, 不会再有请求线程写入; 本次过期的旧当前窗口进入隔离, 其余过期的子草图可以直接清空
+        List<PackedHeavyKeeper> expired = new ArrayList<>(steps + 1);
+        if (quarantined != null) {
+            expired.add(quarantined);
+            quarantined = null;
+        }
+        for (int i = old.length - steps; i < old.length; i++) {
+            if (i == 0) {
+                quarantined = old[0];
+            } else {
+                expired.add(old[i]);
+            }
+        }
+
+        ring = next;
+        currentEpoch = epoch;
+
+        // 异步清空过期的子草图, 不占用请求线程
+        if (!expired.isEmpty()) {
+            Thread.startVirtualThread(() -> {
+                for (PackedHeavyKeeper sketch : expired) {
+                    sketch.clear();
+                }
+                synchronized (rotateLock) {
+                    for (PackedHeavyKeeper sketch : expired) {
+                        if (spares.size() >= MAX_SPARES) {
+                            break; // 超出上限的子草图直接丢弃, 交给垃圾回收
+                        }
+                        spares.add(sketch);
+                    }
+                }
+            });
+        }
+
+        rebuildHeap(next);
+    }
+
+    /**
+     * 按新的环重新计算最小堆中每个元素的计数, 计数不足的元素会被移出并放入被挤出的元素流(只涉及 k 个元素, 与桶的数量无关)
+     */
+    private void rebuildHeap(PackedHeavyKeeper[] window) {
+        synchronized (minHeap) {
+            Item[] snapshot = minHeap.snapshot();
+            minHeap.clear();
+            for (Item item : snapshot) {
+                long keyHash = KeyHash.hash(item.key());
+                int sum = 0;
+                for (PackedHeavyKeeper sketch : window) {
+                    sum += sketch.estimate(keyHash);
+                }
+                if (sum >= minCount) {
+                    minHeap.insert(keyHash, item.key(), sum);
+                } else {
+                    expelledStream.offer(new Item(item.key(), sum));
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照布局标识, 窗口或者子草图参数不同的快照不能恢复
+     */
+    private long layout(int windows) {
+        return SnapshotFile.layout("windowed-heavy-keeper", windows, windowMillis, depth, width);
+    }
+
+    /**
+     * 创建一个子草图(子草图只使用哈希表部分, 不使用其内部的最小堆)
+     */
+    private PackedHeavyKeeper newSketch() {
+        return new PackedHeavyKeeper(1, width, depth, decay, Integer.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,79 @@
+package cn.com.edtechhub.workmassivelikes.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 点赞键空间(thumb:*)的值序列化器, 值一律以十进制整数的 ASCII 文本保存, 与 Lua 脚本中 HSET 写入的 1 完全相同
+ * 通用的 redisTemplate 使用带默认类型的 Jackson 序列化, 每次 HMGET 都要经过一次 JSON 解析, 并且 Java 侧写入的 true 与 Lua 写入的 1 不一致:
+ * (1)写入: Long 直接转为十进制文本, Redis 会把短整数按整数编码保存在 listpack 中, 不需要 JSON 引号和类型信息
+ * (2)读取: 直接解析十进制文本, 不经过 Jackson
+ * (3)兼容: 旧版本写入的 JSON 值仍然可以读取, true 读取为 1, 带引号的数字字符串去掉引号后解析
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+public class ThumbValueRedisSerializer implements RedisSerializer<Long> {
+
+    /**
+     * 旧版本 Jackson 序列化写入的已点赞标记
+     */
+    private static final byte[] LEGACY_TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public byte[] serialize(Long value) throws SerializationException {
+        return value == null ? null : value.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public Long deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+        int from = 0;
+        int to = bytes.length;
+        if (to >= 2 && bytes[0] == '"' && bytes[to - 1] == '"') {
+            from++;
+            to--;
+        }
+        if (to - from == LEGACY_TRUE.length && Arrays.equals(bytes, from, to, LEGACY_TRUE, 0, LEGACY_TRUE.length)) {
+            return 1L;
+        }
+        return parseLong(bytes, from, to);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Long.class;
+    }
+
+    /**
+     * 直接从字节解析十进制整数, 避免先构造字符串(超过 18 位时可能溢出, 交给 Long.parseLong 检查)
+     */
+    private static long parseLong(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            throw new SerializationException("无法解析点赞记录的值: " + new String(bytes, StandardCharsets.UTF_8));
+        }
+        if (to - i > 18) {
+            try {
+                return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new SerializationException("无法解析点赞记录的值: " + new String(bytes, StandardCharsets.UTF_8), e);
+            }
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new SerializationException("无法解析点赞记录的值: " + new String(bytes, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+}
@@ -3,6 +3,8 @@ package cn.com.edtechhub.workmassivelikes.contant;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
 
+import java.util.List;
+
 /**
  * Lua 脚本常量
  *
@@ -67,36 +69,502 @@ public class LuaScriptConstant {
             """, Long.class);
 
     /**
-     * 确认点赞 Lua 脚本(不携带临时键值对)
+     * 批量确认/取消点赞 Lua 脚本(不携带临时键值对), 按顺序执行, 返回每一项的执行状态(1 成功, -1 重复操作, 0 该项出错)
+     * 每一项操作对应一个 KEYS, 既可以是同一个用户的多次操作, 也可以是微批合并的多个用户的操作
+     * 额外传入批次结果键时结果会短暂保留, 同一批重试时不会重复执行
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> THUMB_BATCH_SCRIPT_MQ = new DefaultRedisScript<>("""
+            local results = {} -- KEYS[i] 为第 i 项的用户点赞记录键名(如 thumb:{user_id}), ARGV 为 "操作类型, 博客 ID" 依次排列, 操作类型为 ThumbTypeEnum 的值(1 为确认点赞, -1 为取消点赞)
+            local items = math.floor(#ARGV / 2)
+            local resultKey = KEYS[items + 1] -- 可选的批次结果键(如 batch:thumb:{batch_id}), 此时 ARGV 最后多一个结果保留秒数
+            
+            -- 1. 同一批已经执行过(连接异常后的重试), 直接返回上次的结果
+            if resultKey then
+                local saved = redis.call("LRANGE", resultKey, 0, -1)
+                if #saved > 0 then
+                    for i = 1, #saved do
+                        saved[i] = tonumber(saved[i])
+                    end
+                    return saved
+                end
+            end
+            
+            -- 2. 逐项执行, 单项出错(例如键的类型不对)时该项返回 0, 不影响前后的其他项
+            for i = 1, items do
+                local userThumbKey = KEYS[i]
+                local blogId = ARGV[i * 2]
+                local ok, result = pcall(function()
+                    local exists = redis.call("HEXISTS", userThumbKey, blogId) == 1
+                    if ARGV[i * 2 - 1] == "1" then
+                        -- 确认点赞, 已经点赞时返回 -1
+                        if exists then
+                            return -1
+                        end
+                        redis.call("HSET", userThumbKey, blogId, 1)
+                        return 1
+                    end
+                    -- 取消点赞, 没有点赞时返回 -1
+                    if not exists then
+                        return -1
+                    end
+                    redis.call("HDEL", userThumbKey, blogId)
+                    return 1
+                end)
+                results[i] = ok and result or 0
+            end
+            
+            -- 3. 保留本批的结果
+            if resultKey then
+                redis.call("RPUSH", resultKey, unpack(results))
+                redis.call("EXPIRE", resultKey, ARGV[items * 2 + 1])
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 分桶布局的公共函数, 拼接在分桶布局的各个脚本之前
+     * 用户的桶数保存在 thumb:{user_id}:buckets 中(不存在时为 1), 按线性哈希逐个分裂: 桶数为 n、level 为不超过 n 的最大的 2 的幂时,
+     * 博文所在的桶为 hash % (2 * level), 结果不小于 n 时(对应的桶还没有分裂出来)取 hash % level, hash 为博文 ID 十进制文本的 SHA-1 的前 32 位
+     */
+    private static final String BUCKETED_FUNCTIONS = """
+            local SPLIT_ENTRIES = %d
+            
+            local function hashOf(blogId)
+                return tonumber(string.sub(redis.sha1hex(blogId), 1, 8), 16)
+            end
+            
+            local function levelOf(buckets)
+                local level = 1
+                while level * 2 <= buckets do
+                    level = level * 2
+                end
+                return level
+            end
+            
+            local function bucketsOf(base)
+                return tonumber(redis.call("GET", base .. ":buckets") or 1)
+            end
+            
+            local function bucketKey(base, buckets, blogId)
+                local level = levelOf(buckets)
+                local hash = hashOf(blogId)
+                local bucket = hash %% (level * 2)
+                if bucket >= buckets then
+                    bucket = hash %% level
+                end
+                return base .. ":" .. bucket
+            end
+            
+            -- 写入后所在的桶超过 SPLIT_ENTRIES 个记录时, 分裂下一个待分裂的桶(buckets - level), 其中约一半的记录移到新桶 buckets
+            -- 待分裂的桶按顺序轮转, 每次只分裂一个桶, 单次写入的额外开销不超过一个桶的大小
+            local function splitIfFull(base, key)
+                if redis.call("HLEN", key) <= SPLIT_ENTRIES then
+                    return
+                end
+                local buckets = bucketsOf(base)
+                local level = levelOf(buckets)
+                local from = base .. ":" .. (buckets - level)
+                local to = base .. ":" .. buckets
+                local entries = redis.call("HGETALL", from)
+                for i = 1, #entries, 2 do
+                    if hashOf(entries[i]) %% (level * 2) == buckets then
+                        redis.call("HSET", to, entries[i], entries[i + 1])
+                        redis.call("HDEL", from, entries[i])
+                    end
+                end
+                redis.call("SET", base .. ":buckets", buckets + 1)
+            end
+            
+            """.formatted(ThumbConstant.USER_THUMB_BUCKET_SPLIT_ENTRIES);
+
+    /**
+     * 确认点赞 Lua 脚本(携带临时键值对, 分桶布局)
+     */
+    public static final RedisScript<Long> THUMB_BUCKETED_SCRIPT = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local tempThumbKey = KEYS[1] -- 临时点赞记录键名(如 thumb:temp:{time_slice}) => thumb:temp:11:20:00 -> "01:001=-1", "01:002=1"
+            local base = KEYS[2]         -- 用户点赞记录键名前缀(如 thumb:{user_id}), 实际的键为 thumb:{user_id}:{bucket}
+            local userId = ARGV[1]       -- 用户 ID
+            local blogId = ARGV[2]       -- 博客 ID
+            local userThumbKey = bucketKey(base, bucketsOf(base), blogId)
+            
+            -- 1. 检查是否已经确认点赞(避免重复操作)
+            if redis.call('HEXISTS', userThumbKey, blogId) == 1 then
+                return -1
+            end
+            
+            -- 2. 更新临时点赞记录
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            redis.call('HSET', tempThumbKey, hashKey, oldNumber + 1)
+            
+            -- 3. 写入用户点赞记录, 桶满时分裂
+            redis.call('HSET', userThumbKey, blogId, 1)
+            splitIfFull(base, userThumbKey)
+            return 1
+            """, Long.class);
+
+    /**
+     * 取消点赞 Lua 脚本(携带临时键值对, 分桶布局)
      */
-    public static final RedisScript<Long> THUMB_SCRIPT_MQ = new DefaultRedisScript<>("""  
-            local userThumbKey = KEYS[1] -- 用户点赞记录键名(如 thumb:{user_id})         =>            thumb:01 -> "001=1", "002=1"
-            local blogId = ARGV[1]       -- 博客 ID
+    public static final RedisScript<Long> UNTHUMB_BUCKETED_SCRIPT = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local tempThumbKey = KEYS[1] -- 临时点赞记录键名(如 thumb:temp:{time_slice}) => thumb:temp:11:20:00 -> "01:001=-1", "01:002=1"
+            local base = KEYS[2]         -- 用户点赞记录键名前缀(如 thumb:{user_id}), 实际的键为 thumb:{user_id}:{bucket}
+            local userId = ARGV[1]       -- 用户 ID
+            local blogId = ARGV[2]       -- 博客 ID
+            local userThumbKey = bucketKey(base, bucketsOf(base), blogId)
             
             -- 1. 检查是否已经取消点赞(避免重复操作)
-            if redis.call("HEXISTS", userThumbKey, blogId) == 1 then
+            if redis.call('HEXISTS', userThumbKey, blogId) == 0 then
+                return -1
+            end
+            
+            -- 2. 更新临时点赞记录
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            redis.call('HSET', tempThumbKey, hashKey, oldNumber - 1)
+            
+            -- 3. 删除用户点赞记录(桶只分裂不合并)
+            redis.call('HDEL', userThumbKey, blogId)
+            return 1
+            """, Long.class);
+
+    /**
+     * 批量确认/取消点赞 Lua 脚本(不携带临时键值对, 分桶布局), 与 THUMB_BATCH_SCRIPT_MQ 的去重语义、参数相同, 只是每一项的 KEYS 为用户点赞记录键名前缀
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> THUMB_BATCH_BUCKETED_SCRIPT_MQ = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local results = {} -- KEYS[i] 为第 i 项的用户点赞记录键名前缀(如 thumb:{user_id}), ARGV 为 "操作类型, 博客 ID" 依次排列, 操作类型为 ThumbTypeEnum 的值(1 为确认点赞, -1 为取消点赞)
+            local items = math.floor(#ARGV / 2)
+            local resultKey = KEYS[items + 1] -- 可选的批次结果键, 与 THUMB_BATCH_SCRIPT_MQ 相同
+            
+            -- 1. 同一批已经执行过(连接异常后的重试), 直接返回上次的结果
+            if resultKey then
+                local saved = redis.call("LRANGE", resultKey, 0, -1)
+                if #saved > 0 then
+                    for i = 1, #saved do
+                        saved[i] = tonumber(saved[i])
+                    end
+                    return saved
+                end
+            end
+            
+            -- 2. 逐项执行(每一项都重新读取桶数, 前面的项可能刚刚分裂过), 单项出错时该项返回 0, 不影响前后的其他项
+            for i = 1, items do
+                local base = KEYS[i]
+                local blogId = ARGV[i * 2]
+                local ok, result = pcall(function()
+                    local userThumbKey = bucketKey(base, bucketsOf(base), blogId)
+                    local exists = redis.call("HEXISTS", userThumbKey, blogId) == 1
+                    if ARGV[i * 2 - 1] == "1" then
+                        -- 确认点赞, 已经点赞时返回 -1
+                        if exists then
+                            return -1
+                        end
+                        redis.call("HSET", userThumbKey, blogId, 1)
+                        splitIfFull(base, userThumbKey)
+                        return 1
+                    end
+                    -- 取消点赞, 没有点赞时返回 -1
+                    if not exists then
+                        return -1
+                    end
+                    redis.call("HDEL", userThumbKey, blogId)
+                    return 1
+                end)
+                results[i] = ok and result or 0
+            end
+            
+            -- 3. 保留本批的结果
+            if resultKey then
+                redis.call("RPUSH", resultKey, unpack(results))
+                redis.call("EXPIRE", resultKey, ARGV[items * 2 + 1])
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 分桶布局: 批量判断用户是否点赞了这些博文, 返回与 ARGV 一一对应的 1/0(在脚本中读取桶数, 不会与分裂交错)
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> HAS_THUMB_BUCKETED_SCRIPT = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local base = KEYS[1] -- 用户点赞记录键名前缀(如 thumb:{user_id})
+            local buckets = bucketsOf(base)
+            local results = {}
+            for i = 1, #ARGV do
+                results[i] = redis.call("HEXISTS", bucketKey(base, buckets, ARGV[i]), ARGV[i])
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 分桶布局: 用户点赞的所有博文(所有桶的字段)
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> BLOG_IDS_BUCKETED_SCRIPT = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local base = KEYS[1] -- 用户点赞记录键名前缀(如 thumb:{user_id})
+            local results = {}
+            for bucket = 0, bucketsOf(base) - 1 do
+                local fields = redis.call("HKEYS", base .. ":" .. bucket)
+                for i = 1, #fields do
+                    results[#results + 1] = fields[i]
+                end
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 分桶布局: 用户点赞的博文个数(所有桶的字段个数之和)
+     */
+    public static final RedisScript<Long> COUNT_BUCKETED_SCRIPT = new DefaultRedisScript<>(BUCKETED_FUNCTIONS + """
+            local base = KEYS[1] -- 用户点赞记录键名前缀(如 thumb:{user_id})
+            local count = 0
+            for bucket = 0, bucketsOf(base) - 1 do
+                count = count + redis.call("HLEN", base .. ":" .. bucket)
+            end
+            return count
+            """, Long.class);
+
+    /**
+     * 确认点赞 Lua 脚本(携带临时键值对, 位图布局)
+     */
+    public static final RedisScript<Long> THUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            local tempThumbKey = KEYS[1] -- 临时点赞记录键名(如 thumb:temp:{time_slice}) => thumb:temp:11:20:00 -> "01:001=-1", "01:002=1"
+            local userThumbKey = KEYS[2] -- 用户点赞位图键名(如 thumb:bits:{user_id}:{chunk})
+            local userId = ARGV[1]       -- 用户 ID
+            local blogId = ARGV[2]       -- 博客 ID
+            local offset = ARGV[3]       -- 博文序号在位图中的偏移
+            local chunksKey = string.gsub(userThumbKey, '%d+$', 'chunks') -- 用户已有的块集合(如 thumb:bits:{user_id}:chunks)
+            
+            -- 1. 检查是否已经确认点赞(避免重复操作)
+            if redis.call('GETBIT', userThumbKey, offset) == 1 then
                 return -1
             end
             
-            -- 2. 添加点赞记录
-            redis.call("HSET", userThumbKey, blogId, 1)
+            -- 2. 更新临时点赞记录
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            redis.call('HSET', tempThumbKey, hashKey, oldNumber + 1)
+            
+            -- 3. 写入用户点赞位图, 并把这个块记入用户的块集合
+            redis.call('SETBIT', userThumbKey, offset, 1)
+            redis.call('SADD', chunksKey, string.match(userThumbKey, '%d+$'))
             return 1
             """, Long.class);
 
     /**
-     * 取消点赞 Lua 脚本(不携带临时键值对)
+     * 取消点赞 Lua 脚本(携带临时键值对, 位图布局)
      */
-    public static final RedisScript<Long> UNTHUMB_SCRIPT_MQ = new DefaultRedisScript<>("""  
-            local userThumbKey = KEYS[1] -- 用户点赞记录键名(如 thumb:{user_id})         =>            thumb:01 -> "001=1", "002=1"
-            local blogId = ARGV[1]       -- 博客 ID
+    public static final RedisScript<Long> UNTHUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            local tempThumbKey = KEYS[1] -- 临时点赞记录键名(如 thumb:temp:{time_slice}) => thumb:temp:11:20:00 -> "01:001=-1", "01:002=1"
+            local userThumbKey = KEYS[2] -- 用户点赞位图键名(如 thumb:bits:{user_id}:{chunk})
+            local userId = ARGV[1]       -- 用户 ID
+            local blogId = ARGV[2]       -- 博客 ID
+            local offset = ARGV[3]       -- 博文序号在位图中的偏移
+            local chunksKey = string.gsub(userThumbKey, '%d+$', 'chunks') -- 用户已有的块集合(如 thumb:bits:{user_id}:chunks)
             
             -- 1. 检查是否已经取消点赞(避免重复操作)
-            if redis.call("HEXISTS", userThumbKey, blogId) == 0 then
+            if redis.call('GETBIT', userThumbKey, offset) == 0 then
                 return -1
             end
             
-            -- 2. 删除点赞记录
-            redis.call("HDEL", userThumbKey, blogId)
+            -- 2. 更新临时点赞记录
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            redis.call('HSET', tempThumbKey, hashKey, oldNumber - 1)
+            
+            -- 3. 清除用户点赞位图中的位, 整块都为 0 时删除这个块, 并从用户的块集合中移除
+            redis.call('SETBIT', userThumbKey, offset, 0)
+            if redis.call('BITCOUNT', userThumbKey) == 0 then
+                redis.call('DEL', userThumbKey)
+                redis.call('SREM', chunksKey, string.match(userThumbKey, '%d+$'))
+            end
             return 1
             """, Long.class);
+
+    /**
+     * 批量确认/取消点赞 Lua 脚本(不携带临时键值对, 位图布局), 与 THUMB_BATCH_SCRIPT_MQ 的去重语义相同
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> THUMB_BATCH_BITMAP_SCRIPT_MQ = new DefaultRedisScript<>("""
+            local results = {} -- KEYS[i] 为第 i 项的用户点赞位图键名(如 thumb:bits:{user_id}:{chunk}), ARGV 为 "操作类型, 位偏移" 依次排列, 操作类型为 ThumbTypeEnum 的值(1 为确认点赞, -1 为取消点赞)
+            local items = math.floor(#ARGV / 2)
+            local resultKey = KEYS[items + 1] -- 可选的批次结果键, 与 THUMB_BATCH_SCRIPT_MQ 相同
+            
+            -- 1. 同一批已经执行过(连接异常后的重试), 直接返回上次的结果
+            if resultKey then
+                local saved = redis.call("LRANGE", resultKey, 0, -1)
+                if #saved > 0 then
+                    for i = 1, #saved do
+                        saved[i] = tonumber(saved[i])
+                    end
+                    return saved
+                end
+            end
+            
+            -- 2. 逐项执行, 单项出错时该项返回 0, 不影响前后的其他项
+            for i = 1, items do
+                local userThumbKey = KEYS[i]
+                local offset = ARGV[i * 2]
+                local chunk = string.match(userThumbKey, "%d+$")
+                local chunksKey = string.gsub(userThumbKey, "%d+$", "chunks") -- 用户已有的块集合(如 thumb:bits:{user_id}:chunks)
+                local ok, result = pcall(function()
+                    if ARGV[i * 2 - 1] == "1" then
+                        -- 确认点赞, SETBIT 返回旧值, 已经点赞时返回 -1
+                        if redis.call("SETBIT", userThumbKey, offset, 1) == 1 then
+                            return -1
+                        end
+                        redis.call("SADD", chunksKey, chunk)
+                        return 1
+                    end
+                    -- 取消点赞, 没有点赞时返回 -1(先检查, 避免对不存在的块执行 SETBIT 创建一整块 0)
+                    if redis.call("GETBIT", userThumbKey, offset) == 0 then
+                        return -1
+                    end
+                    redis.call("SETBIT", userThumbKey, offset, 0)
+                    if redis.call("BITCOUNT", userThumbKey) == 0 then
+                        redis.call("DEL", userThumbKey)
+                        redis.call("SREM", chunksKey, chunk)
+                    end
+                    return 1
+                end)
+                results[i] = ok and result or 0
+            end
+            
+            -- 3. 保留本批的结果
+            if resultKey then
+                redis.call("RPUSH", resultKey, unpack(results))
+                redis.call("EXPIRE", resultKey, ARGV[items * 2 + 1])
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 批量获取博文序号 Lua 脚本, 没有序号的博文分配下一个序号, 返回与 ARGV 一一对应的序号
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> BLOG_ORDINAL_SCRIPT = new DefaultRedisScript<>("""
+            local ordinalKey = KEYS[1] -- 博文序号键名 ordinal:blog          => "field(blog_id)=value(ordinal)"
+            local reverseKey = KEYS[2] -- 博文序号反向键名 ordinal:blog:reverse => "field(ordinal)=value(blog_id)"
+            local seqKey = KEYS[3]     -- 博文序号计数器 ordinal:blog:seq
+            local results = {}
+            
+            for i = 1, #ARGV do
+                local ordinal = redis.call("HGET", ordinalKey, ARGV[i])
+                if not ordinal then
+                    ordinal = redis.call("INCR", seqKey) - 1
+                    redis.call("HSET", ordinalKey, ARGV[i], ordinal)
+                    redis.call("HSET", reverseKey, ordinal, ARGV[i])
+                end
+                results[i] = tonumber(ordinal)
+            end
+            return results
+            """, List.class);
+
+    /**
+     * 博文点赞用户索引的公共函数, 拼接在各个脚本之前
+     * 四个键同时续期, 保证它们一起过期; 增量序号从 Redis 的当前时间(微秒)开始, 键被删除或者过期后重新初始化的序号一定大于之前的序号, 持有旧副本的实例一定能发现缺口
+     */
+    private static final String BLOG_LIKERS_FUNCTIONS = """
+            local snapshotKey = KEYS[1] -- 博文点赞用户位图快照键名(如 likers:{blog_id})
+            local versionKey = KEYS[2]  -- 快照已经合并到的增量序号键名(如 likers:{blog_id}:version)
+            local logKey = KEYS[3]      -- 增量日志键名(如 likers:{blog_id}:log), 每一项为 "序号:userId", 取消点赞的 userId 为负数
+            local seqKey = KEYS[4]      -- 最新的增量序号键名(如 likers:{blog_id}:seq)
+            local ttl = ARGV[1]         -- 过期秒数
+            
+            local function touch()
+                for i = 1, 4 do
+                    redis.call('EXPIRE', KEYS[i], ttl)
+                end
+            end
+            
+            """;
+
+    /**
+     * 读取博文点赞用户索引: 返回 {快照(不存在时为空串), 快照的增量序号, 最新的增量序号, 增量日志...}
+     * 序号不存在时, 期间的增量都没有追加, 快照和日志已经不可信, 删除后初始化序号, 由调用方从 MySQL 构建
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> BLOG_LIKERS_LOAD_SCRIPT = new DefaultRedisScript<>(BLOG_LIKERS_FUNCTIONS + """
+            local seq = redis.call('GET', seqKey)
+            if not seq then
+                redis.call('DEL', snapshotKey, versionKey, logKey)
+                local time = redis.call('TIME')
+                seq = string.format('%d', tonumber(time[1]) * 1000000 + tonumber(time[2]))
+                redis.call('SET', seqKey, seq)
+            end
+            local result = { redis.call('GET', snapshotKey) or '', redis.call('GET', versionKey) or '0', seq }
+            local log = redis.call('LRANGE', logKey, 0, -1)
+            for i = 1, #log do
+                result[#result + 1] = log[i]
+            end
+            touch()
+            return result
+            """, List.class);
+
+    /**
+     * 保存从 MySQL 构建的博文点赞用户位图(ARGV[2] 为构建前读取的最新增量序号, ARGV[3] 为位图序列化字节)
+     * 已经有快照时不覆盖并返回空列表(调用方改为使用已有的快照), 否则返回 {1, 增量日志...}
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> BLOG_LIKERS_SAVE_SCRIPT = new DefaultRedisScript<>(BLOG_LIKERS_FUNCTIONS + """
+            if redis.call('EXISTS', snapshotKey) == 1 then
+                return {}
+            end
+            redis.call('SET', snapshotKey, ARGV[3])
+            redis.call('SET', versionKey, ARGV[2])
+            local result = { 1 }
+            local log = redis.call('LRANGE', logKey, 0, -1)
+            for i = 1, #log do
+                result[#result + 1] = log[i]
+            end
+            touch()
+            return result
+            """, List.class);
+
+    /**
+     * 追加博文点赞用户索引的增量(ARGV[2] 为广播频道, ARGV[3] 为博文 ID, ARGV[4...] 为增量, 取消点赞的 userId 为负数)
+     * 分配连续的序号写入增量日志, 并在脚本内发布 "博文 ID:追加前的序号:增量1,增量2,...", 脚本串行执行, 订阅方收到的消息与序号的顺序一致
+     * 返回追加后的序号, 没有任何实例读取过这篇博文的索引(序号不存在)时不追加并返回 -1, 下次读取时从 MySQL 构建
+     */
+    public static final RedisScript<Long> BLOG_LIKERS_APPEND_SCRIPT = new DefaultRedisScript<>(BLOG_LIKERS_FUNCTIONS + """
+            local seq = redis.call('GET', seqKey)
+            if not seq then
+                return -1
+            end
+            local from = tonumber(seq)
+            seq = from
+            for i = 4, #ARGV do
+                seq = seq + 1
+                redis.call('RPUSH', logKey, string.format('%d', seq) .. ':' .. ARGV[i])
+            end
+            redis.call('SET', seqKey, string.format('%d', seq))
+            touch()
+            redis.call('PUBLISH', ARGV[2], ARGV[3] .. ':' .. string.format('%d', from) .. ':' .. table.concat(ARGV, ',', 4))
+            return seq
+            """, Long.class);
+
+    /**
+     * 合并博文点赞用户索引的增量日志(ARGV[2] 为本地副本已经应用到的增量序号, ARGV[3] 为本地副本的序列化字节)
+     * 已有的快照不比本地副本旧时不写入, 否则写入快照并删除日志中已经合并的增量, 返回合并后快照的增量序号
+     */
+    public static final RedisScript<Long> BLOG_LIKERS_COMPACT_SCRIPT = new DefaultRedisScript<>(BLOG_LIKERS_FUNCTIONS + """
+            local version = tonumber(ARGV[2])
+            local current = tonumber(redis.call('GET', versionKey) or '-1')
+            if redis.call('EXISTS', snapshotKey) == 1 and current >= version then
+                return current
+            end
+            redis.call('SET', snapshotKey, ARGV[3])
+            redis.call('SET', versionKey, ARGV[2])
+            while true do
+                local head = redis.call('LINDEX', logKey, 0)
+                if not head or tonumber(string.match(head, '^(%d+):')) > version then
+                    break
+                end
+                redis.call('LPOP', logKey)
+            end
+            touch()
+            return version
+            """, Long.class);
+
 }
@@ -12,9 +12,109 @@ public interface ThumbConstant {
      */
     String USER_THUMB_KEY_PREFIX = "thumb:";
 
+    /**
+     * 分桶布局的用户点赞记录键名前缀 key(user_id:bucket): "field(blog_id)=value(1)"
+     */
+    String USER_THUMB_BUCKET_KEY_PREFIX = "thumb:%s:%s";
+
+    /**
+     * 分桶布局的用户桶数键名前缀 key(user_id): "value(桶数)", 不存在时为 1, 由 Lua 脚本在桶满分裂时加 1
+     */
+    String USER_THUMB_BUCKETS_KEY_PREFIX = "thumb:%s:buckets";
+
+    /**
+     * 分桶布局中触发分裂的桶内记录数, 取 hash-max-listpack-entries 默认值 128 的一半, 分裂按顺序轮转, 满桶在等待分裂期间仍然有余量保持 listpack 编码
+     */
+    int USER_THUMB_BUCKET_SPLIT_ENTRIES = 64;
+
+    /**
+     * 位图布局的用户点赞记录键名前缀 key(user_id:chunk): "value(位图, 第 ordinal % chunkBits 位为 1 表示点赞)"
+     */
+    String USER_THUMB_BITMAP_KEY_PREFIX = "thumb:bits:%s:%s";
+
+    /**
+     * 位图布局的用户块集合键名前缀 key(user_id): "member(chunk)", 只记录至少有一位为 1 的块, 由 Lua 脚本与块一起维护
+     */
+    String USER_THUMB_BITMAP_CHUNKS_KEY_PREFIX = "thumb:bits:%s:chunks";
+
+    /**
+     * 博文序号键名 key: "field(blog_id)=value(ordinal)", 位图布局用连续的序号代替雪花算法的博文 ID 作为位偏移
+     */
+    String BLOG_ORDINAL_KEY = "ordinal:blog";
+
+    /**
+     * 博文序号的反向键名 key: "field(ordinal)=value(blog_id)"
+     */
+    String BLOG_ORDINAL_REVERSE_KEY = "ordinal:blog:reverse";
+
+    /**
+     * 博文序号的计数器键名 key: "value(已经分配的序号个数)"
+     */
+    String BLOG_ORDINAL_SEQ_KEY = "ordinal:blog:seq";
+
     /**
      * 临时点赞记录键名前缀 key(time_slice): "field(user_id:blog_id)=value(is_thumb)"
      */
     String TEMP_THUMB_KEY_PREFIX = "thumb:temp:%s";
 
+    /**
+     * 微批合并的批次结果键名前缀 key(batch_id): ["每一项的执行状态", ...], 短暂保留, 连接异常重试同一批时直接返回上次的结果
+     */
+    String THUMB_BATCH_RESULT_KEY_PREFIX = "batch:thumb:%s";
+
+    /**
+     * 集群热点快照键名前缀 key(detector): "field(instance_id)=value(publish_millis;key:count,...)"
+     */
+    String HOT_KEY_SNAPSHOT_KEY_PREFIX = "hotkey:%s";
+
+    /**
+     * 用户点赞集合失效频道, 消息内容为 userId
+     */
+    String USER_THUMB_INVALIDATE_CHANNEL = "thumb:invalidate";
+
+    /**
+     * 点赞布隆过滤器广播频道, 消息内容为 "userId:blogId"
+     */
+    String THUMB_BLOOM_CHANNEL = "thumb:bloom";
+
+    /**
+     * 取消点赞广播频道, 消息内容为 "userId:blogId", 各实例从热点用户的已点赞集合中移除该博文
+     */
+    String THUMB_UNLIKE_CHANNEL = "thumb:unlike";
+
+    /**
+     * 博文点赞用户位图键名前缀 key(blog_id): "value(Roaring64NavigableMap 序列化字节)"
+     */
+    String BLOG_LIKERS_KEY_PREFIX = "likers:%s";
+
+    /**
+     * 博文点赞用户位图快照已经合并到的增量序号键名前缀 key(blog_id): "value(增量序号)"
+     */
+    String BLOG_LIKERS_VERSION_KEY_PREFIX = "likers:%s:version";
+
+    /**
+     * 博文点赞用户位图的增量日志键名前缀 key(blog_id): "list(序号:userId)", 取消点赞的 userId 为负数
+     */
+    String BLOG_LIKERS_LOG_KEY_PREFIX = "likers:%s:log";
+
+    /**
+     * 博文点赞用户位图的最新增量序号键名前缀 key(blog_id): "value(增量序号)"
+     */
+    String BLOG_LIKERS_SEQ_KEY_PREFIX = "likers:%s:seq";
+
+    /**
+     * 博文点赞用户位图增量广播频道, 消息内容为 "blogId:追加前的序号:增量1,增量2,..."(由追加增量的 Lua 脚本发布)
+     */
+    String BLOG_LIKERS_DELTA_CHANNEL = "likers:delta";
+
+    /**
+     * 博文三级缓存的 Redis 键名前缀 key(blog_id): "value(Blog JSON)"
+     */
+    String BLOG_CACHE_KEY_PREFIX = "blog:%s";
+
+    /**
+     * 博文三级缓存的失效频道, 消息内容为 blogId
+     */
+    String BLOG_CACHE_INVALIDATE_CHANNEL = "blog:invalidate";
+
 }
@@ -3,6 +3,7 @@ package cn.com.edtechhub.workmassivelikes.controller;
 import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
 import cn.com.edtechhub.workmassivelikes.model.dto.BlogDto;
 import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
+import cn.com.edtechhub.workmassivelikes.request.BlogLikersRequest;
 import cn.com.edtechhub.workmassivelikes.request.BlogSearchRequest;
 import cn.com.edtechhub.workmassivelikes.response.BaseResponse;
 import cn.com.edtechhub.workmassivelikes.response.TheResult;
@@ -62,4 +63,24 @@ public class BlogController {
         return TheResult.success(CodeBindMessageEnum.SUCCESS, blogDtoList);
     }
 
+    /**
+     * 查询点赞过博文的不同用户个数
+     */
+    @SaCheckLogin
+    @PostMapping("/likers/count")
+    public BaseResponse<Long> blogLikersCount(Long blogId) {
+        Long count = blogService.blogLikersCount(blogId);
+        return TheResult.success(CodeBindMessageEnum.SUCCESS, count);
+    }
+
+    /**
+     * 查询给定用户中点赞过博文的用户(例如好友中谁点赞了这篇博文)
+     */
+    @SaCheckLogin
+    @PostMapping("/likers/include")
+    public BaseResponse<List<Long>> blogLikersInclude(@RequestBody BlogLikersRequest blogLikersRequest) {
+        List<Long> userIdList = blogService.blogLikersInclude(blogLikersRequest);
+        return TheResult.success(CodeBindMessageEnum.SUCCESS, userIdList);
+    }
+
 }
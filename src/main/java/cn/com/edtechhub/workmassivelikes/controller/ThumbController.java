@@ -1,6 +1,7 @@
 package cn.com.edtechhub.workmassivelikes.controller;
 
 import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
+import cn.com.edtechhub.workmassivelikes.request.ThumbBatchRequest;
 import cn.com.edtechhub.workmassivelikes.request.ThumbDoRequest;
 import cn.com.edtechhub.workmassivelikes.request.ThumbUnDoRequest;
 import cn.com.edtechhub.workmassivelikes.response.BaseResponse;
@@ -14,6 +15,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * 点赞控制器
  *
@@ -39,4 +42,13 @@ public class ThumbController {
         return TheResult.success(CodeBindMessageEnum.SUCCESS, thumbService.thumbAddUnDoUseMQ(thumbUnDoRequest.getBlogId()));
     }
 
+    /**
+     * 批量确认/取消点赞, 所有操作在一次 Lua 脚本调用中按顺序执行, 返回每一项是否生效
+     */
+    @SaCheckLogin
+    @PostMapping("/add/batch")
+    public BaseResponse<List<Boolean>> thumbBatch(@RequestBody ThumbBatchRequest thumbBatchRequest) {
+        return TheResult.success(CodeBindMessageEnum.SUCCESS, thumbService.thumbBatchUseMQ(thumbBatchRequest.getItems()));
+    }
+
 }
@@ -0,0 +1,51 @@
+package cn.com.edtechhub.workmassivelikes.enums;
+
+import lombok.Getter;
+
+/**
+ * 用户点赞记录的键布局枚举体
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Getter
+public enum ThumbLayoutEnum {
+
+    /**
+     * 每个用户一个哈希 thumb:{userId}
+     */
+    FLAT("flat"),
+
+    /**
+     * 每个用户固定个数的分桶哈希 thumb:{userId}:{bucket}, 每个桶都保持 listpack 编码
+     */
+    BUCKETED("bucketed"),
+
+    /**
+     * 每个用户按博文序号分块的位图 thumb:bits:{userId}:{chunk}, 适合点赞密集的场景
+     */
+    BITMAP("bitmap"),
+
+    ;
+
+    /**
+     * 配置文件中使用的取值
+     */
+    private final String value;
+
+    ThumbLayoutEnum(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 根据配置取值获取枚举, 找不到时返回 null
+     */
+    public static ThumbLayoutEnum getEnumByValue(String value) {
+        for (ThumbLayoutEnum layout : ThumbLayoutEnum.values()) {
+            if (layout.getValue().equals(value)) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+}
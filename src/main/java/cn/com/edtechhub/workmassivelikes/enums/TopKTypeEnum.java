@@ -0,0 +1,66 @@
+package cn.com.edtechhub.workmassivelikes.enums;
+
+import lombok.Getter;
+
+/**
+ * TopK 实现类型枚举体
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Getter
+public enum TopKTypeEnum {
+
+    /**
+     * 基于 Bucket 对象和 synchronized 的 HeavyKeeper
+     */
+    HEAVY_KEEPER("heavy-keeper"),
+
+    /**
+     * 基于紧凑数组和 CAS 的 HeavyKeeper
+     */
+    PACKED_HEAVY_KEEPER("packed-heavy-keeper"),
+
+    /**
+     * 按线程分条带写入并定期合并的 HeavyKeeper
+     */
+    STRIPED_HEAVY_KEEPER("striped-heavy-keeper"),
+
+    /**
+     * 基于时间窗口环滑动过期的 HeavyKeeper
+     */
+    WINDOWED_HEAVY_KEEPER("windowed-heavy-keeper"),
+
+    /**
+     * 只维护固定数量计数器的 Space-Saving
+     */
+    SPACE_SAVING("space-saving"),
+
+    /**
+     * Count-Min Sketch 加最小堆
+     */
+    COUNT_MIN_HEAP("count-min-heap"),
+
+    ;
+
+    /**
+     * 配置文件中使用的取值
+     */
+    private final String value;
+
+    TopKTypeEnum(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 根据配置取值获取枚举, 找不到时返回 null
+     */
+    public static TopKTypeEnum getEnumByValue(String value) {
+        for (TopKTypeEnum type : TopKTypeEnum.values()) {
+            if (type.getValue().equals(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,46 @@
+package cn.com.edtechhub.workmassivelikes.enums;
+
+import lombok.Getter;
+
+/**
+ * 三级缓存写入策略枚举体
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Getter
+public enum WritePolicyEnum {
+
+    /**
+     * 直写, 先同步写入数据源再更新缓存
+     */
+    WRITE_THROUGH("write-through"),
+
+    /**
+     * 回写, 先更新缓存, 再由定时任务批量写入数据源
+     */
+    WRITE_BEHIND("write-behind"),
+
+    ;
+
+    /**
+     * 配置文件中使用的取值
+     */
+    private final String value;
+
+    WritePolicyEnum(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 根据配置取值获取枚举, 找不到时返回 null
+     */
+    public static WritePolicyEnum getEnumByValue(String value) {
+        for (WritePolicyEnum policy : WritePolicyEnum.values()) {
+            if (policy.getValue().equals(value)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+}
@@ -1,6 +1,6 @@
 package cn.com.edtechhub.workmassivelikes.job.cycle;
 
-import cn.com.edtechhub.workmassivelikes.cache.HeavyKeeper;
+import cn.com.edtechhub.workmassivelikes.cache.TopK;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -10,6 +10,7 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 定时衰弱 TopK 数据结构
+ * 对于 windowed-heavy-keeper 来说过期依靠窗口轮转完成, 这里只会触发一次 O(1) 的轮转检查, 不会再遍历所有的桶
  *
  * @author <a href="https://github.com/limou3434">limou3434</a>
  */
@@ -18,12 +19,16 @@ import java.util.concurrent.TimeUnit;
 public class CleanCaffeineHotKeysJob {
 
     @Resource
-    private HeavyKeeper hotKeyDetector;
+    private TopK hotKeyDetector;
+
+    @Resource
+    private TopK hotBlogDetector;
 
     @Scheduled(fixedRate = 20, timeUnit = TimeUnit.SECONDS)
     public void cleanHotKeys() {
         log.debug("衰弱一次 TopK 数据结构");
         hotKeyDetector.fading();
+        hotBlogDetector.fading();
     }
 
 }
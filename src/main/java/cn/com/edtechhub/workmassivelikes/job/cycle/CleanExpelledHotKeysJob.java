@@ -0,0 +1,82 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.ExpelledStream;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
+import cn.com.edtechhub.workmassivelikes.cache.TopK;
+import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时消费被挤出 TopK 的元素, 把已经不再是热点的用户/博文从 Caffeine 本地缓存中移除
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class CleanExpelledHotKeysJob {
+
+    @Resource
+    private TopK hotKeyDetector;
+
+    @Resource
+    private TopK hotBlogDetector;
+
+    @Resource
+    private Cache<String, Object> localCache;
+
+    @Resource
+    private TieredCache<Long, Blog> blogCache;
+
+    /**
+     * 上一次上报时的累计丢弃个数, 用于计算每次新增的丢弃个数
+     */
+    private long reportedDropped;
+
+    private long reportedBlogDropped;
+
+    /**
+     * 注册监听器, 元素被挤出 TopK 后同步移除 Caffeine 中对应的缓存
+     */
+    @PostConstruct
+    public void init() {
+        hotKeyDetector.expelled().addListener(item -> {
+            localCache.invalidate(item.key());
+            log.debug("用户 {} 不再是热点(计数 {}), 移除 Caffeine 缓存", item.key(), item.count());
+        });
+        hotBlogDetector.expelled().addListener(item -> {
+            blogCache.invalidateLocal(Long.valueOf(item.key()));
+            log.debug("博文 {} 不再是热点(计数 {}), 移除本地缓存", item.key(), item.count());
+        });
+    }
+
+    @Scheduled(fixedRate = 1, timeUnit = TimeUnit.SECONDS)
+    public void drainExpelledKeys() {
+        reportedDropped = drain(hotKeyDetector.expelled(), reportedDropped);
+        reportedBlogDropped = drain(hotBlogDetector.expelled(), reportedBlogDropped);
+    }
+
+    /**
+     * 消费一个被挤出的元素流, 返回最新的累计丢弃个数
+     */
+    private long drain(ExpelledStream expelled, long reported) {
+        int drained = expelled.drain();
+        if (drained > 0) {
+            log.debug("本次消费被挤出的元素 {} 个", drained);
+        }
+
+        // 缓冲区满时最旧的元素会被丢弃, 对应的缓存只能等待 Caffeine 自身过期, 这里上报丢弃个数以便调整容量或消费频率
+        long dropped = expelled.dropped();
+        if (dropped > reported) {
+            log.warn("被挤出的元素流已满, 新增丢弃 {} 个, 累计丢弃 {} 个", dropped - reported, dropped);
+        }
+        return dropped;
+    }
+
+}
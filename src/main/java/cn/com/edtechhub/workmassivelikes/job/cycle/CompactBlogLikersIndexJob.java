@@ -0,0 +1,31 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.BlogLikersIndex;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时把博文点赞用户索引的增量日志合并为新的快照
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class CompactBlogLikersIndexJob {
+
+    @Resource
+    private BlogLikersIndex blogLikersIndex;
+
+    @Scheduled(fixedRate = 10, timeUnit = TimeUnit.SECONDS)
+    public void compact() {
+        int compacted = blogLikersIndex.compact();
+        if (compacted > 0) {
+            log.debug("本次合并博文点赞用户索引 {} 篇", compacted);
+        }
+    }
+
+}
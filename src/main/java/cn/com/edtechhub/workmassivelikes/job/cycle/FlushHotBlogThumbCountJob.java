@@ -0,0 +1,40 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.HotBlogThumbCounter;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时把热点博文在本地聚合的点赞数增量批量写入数据库
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class FlushHotBlogThumbCountJob {
+
+    @Resource
+    private HotBlogThumbCounter hotBlogThumbCounter;
+
+    @Scheduled(fixedRate = 1, timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        int flushed = hotBlogThumbCounter.flush();
+        if (flushed > 0) {
+            log.debug("本次写入热点博文点赞数 {} 篇", flushed);
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的增量写入数据库
+     */
+    @PreDestroy
+    public void destroy() {
+        hotBlogThumbCounter.flush();
+    }
+
+}
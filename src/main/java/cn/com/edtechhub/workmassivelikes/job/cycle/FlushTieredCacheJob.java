@@ -0,0 +1,45 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时把回写模式的三级缓存中尚未写入的值批量写入数据源(没有配置写入或者直写模式的缓存直接跳过)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class FlushTieredCacheJob {
+
+    /**
+     * 注入所有三级缓存
+     */
+    @Resource
+    private List<TieredCache<?, ?>> tieredCaches;
+
+    @Scheduled(fixedRate = 1, timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        for (TieredCache<?, ?> tieredCache : tieredCaches) {
+            if (tieredCache.isWriteBehind()) {
+                tieredCache.flush();
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的值写入数据源
+     */
+    @PreDestroy
+    public void destroy() {
+        this.flush();
+    }
+
+}
@@ -0,0 +1,31 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.ThumbBloomFilter;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时从 Redis 中的用户点赞记录重建已点赞组合的布隆过滤器
+ * 点赞状态以 Redis 为准, 不需要等待同步到 MySQL, 首次重建只延迟 initial-delay-millis 毫秒, 避开启动时的其他初始化
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class RebuildThumbBloomFilterJob {
+
+    @Resource
+    private ThumbBloomFilter thumbBloomFilter;
+
+    @Scheduled(initialDelayString = "${cache.thumb-bloom.initial-delay-millis:10000}", fixedDelayString = "${cache.thumb-bloom.rebuild-interval-millis:3600000}")
+    public void run() {
+        try {
+            thumbBloomFilter.rebuild();
+        } catch (RuntimeException e) {
+            log.warn("点赞布隆过滤器重建失败, 继续使用旧的过滤器", e);
+        }
+    }
+
+}
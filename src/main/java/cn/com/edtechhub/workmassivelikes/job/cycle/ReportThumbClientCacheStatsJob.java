@@ -0,0 +1,47 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.ThumbClientSideCache;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.csc.CacheStats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时输出点赞记录的 Redis 客户端缓存命中率, 用于评估开启客户端缓存后节省的 Redis 请求数
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ReportThumbClientCacheStatsJob {
+
+    @Resource
+    private ThumbClientSideCache thumbClientSideCache;
+
+    /**
+     * 上一次输出时的累计命中/未命中次数, 用于计算本周期的命中率
+     */
+    private long reportedHits;
+
+    private long reportedMisses;
+
+    @Scheduled(fixedRate = 60, timeUnit = TimeUnit.SECONDS)
+    public void report() {
+        CacheStats stats = thumbClientSideCache.stats();
+        if (stats == null) {
+            return;
+        }
+        long hits = stats.getHitCount() - reportedHits;
+        long misses = stats.getMissCount() - reportedMisses;
+        reportedHits = stats.getHitCount();
+        reportedMisses = stats.getMissCount();
+        if (hits + misses > 0) {
+            log.debug("点赞记录客户端缓存本周期命中 {} 次, 未命中 {} 次, 命中率 {}%, 累计服务端失效 {} 次",
+                    hits, misses, String.format("%.2f", hits * 100.0 / (hits + misses)), stats.getInvalidationCount());
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCacheStats;
+import cn.com.edtechhub.workmassivelikes.cache.UserThumbNearCache;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时输出三级缓存每一级的命中率, 用于评估每一级缓存挡住的请求数
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class ReportTieredCacheStatsJob {
+
+    /**
+     * 注入所有注册为 Bean 的三级缓存
+     */
+    @Resource
+    private List<TieredCache<?, ?>> tieredCaches;
+
+    /**
+     * 注入用户点赞集合的近端缓存(内部的三级缓存没有注册为 Bean)
+     */
+    @Resource
+    private UserThumbNearCache userThumbNearCache;
+
+    /**
+     * 上一次输出时的累计统计, 用于计算本周期的命中率
+     */
+    private final Map<String, TieredCacheStats> reported = new HashMap<>();
+
+    @Scheduled(fixedRate = 60, timeUnit = TimeUnit.SECONDS)
+    public void report() {
+        List<TieredCacheStats> statsList = new ArrayList<>();
+        for (TieredCache<?, ?> tieredCache : tieredCaches) {
+            statsList.add(tieredCache.stats());
+        }
+        statsList.add(userThumbNearCache.stats());
+
+        for (TieredCacheStats stats : statsList) {
+            TieredCacheStats last = reported.getOrDefault(stats.name(), new TieredCacheStats(stats.name(), 0, 0, 0, 0, 0, 0, 0, 0));
+            reported.put(stats.name(), stats);
+            long localHits = stats.localHits() - last.localHits();
+            long localMisses = stats.localMisses() - last.localMisses();
+            long redisHits = stats.redisHits() - last.redisHits();
+            long redisMisses = stats.redisMisses() - last.redisMisses();
+            if (localHits + localMisses > 0) {
+                log.debug("三级缓存 {} 本周期本地命中率 {}%({}/{}), Redis 命中率 {}%({}/{}), 回源 {} 次(空值 {} 次), 合并 {} 次, 待回写 {} 条",
+                        stats.name(),
+                        String.format("%.2f", localHits * 100.0 / (localHits + localMisses)), localHits, localHits + localMisses,
+                        String.format("%.2f", redisHits + redisMisses == 0 ? 0 : redisHits * 100.0 / (redisHits + redisMisses)), redisHits, redisHits + redisMisses,
+                        stats.loads() - last.loads(), stats.negativeLoads() - last.negativeLoads(), stats.coalesced() - last.coalesced(), stats.pendingWrites());
+            }
+        }
+    }
+
+}
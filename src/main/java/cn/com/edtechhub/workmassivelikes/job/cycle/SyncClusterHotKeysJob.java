@@ -0,0 +1,31 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.ClusterHotKeys;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时发布本实例的热点快照并合并集群中所有实例的快照
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class SyncClusterHotKeysJob {
+
+    @Resource
+    private ClusterHotKeys clusterHotUsers;
+
+    @Resource
+    private ClusterHotKeys clusterHotBlogs;
+
+    @Scheduled(fixedRateString = "${cache.hot-key.cluster.sync-millis:1000}")
+    public void syncHotKeys() {
+        clusterHotUsers.sync();
+        clusterHotBlogs.sync();
+        log.debug("集群热点用户 {} 个, 集群热点博文 {} 个", clusterHotUsers.list().size(), clusterHotBlogs.list().size());
+    }
+
+}
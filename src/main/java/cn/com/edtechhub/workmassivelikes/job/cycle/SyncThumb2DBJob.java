@@ -1,7 +1,10 @@
 package cn.com.edtechhub.workmassivelikes.job.cycle;
 
+import cn.com.edtechhub.workmassivelikes.cache.BlogLikersIndex;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
 import cn.com.edtechhub.workmassivelikes.enums.ThumbTypeEnum;
 import cn.com.edtechhub.workmassivelikes.mapper.BlogMapper;
+import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
 import cn.com.edtechhub.workmassivelikes.service.ThumbService;
 import cn.com.edtechhub.workmassivelikes.utils.RedisKeyUtil;
@@ -19,6 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,10 +47,22 @@ public class SyncThumb2DBJob {
     private BlogMapper blogMapper;
 
     /**
-     * 注入 Redis 客户端
+     * 注入点赞键空间专用的 Redis 客户端(值为十进制整数文本)
      */
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private RedisTemplate<String, Long> thumbRedisTemplate;
+
+    /**
+     * 注入博文点赞用户索引
+     */
+    @Resource
+    private BlogLikersIndex blogLikersIndex;
+
+    /**
+     * 注入博文的三级缓存
+     */
+    @Resource
+    private TieredCache<Long, Blog> blogCache;
 
     /**
      * 每隔 10 秒执行一次备份(延迟备份)
@@ -79,7 +95,7 @@ public class SyncThumb2DBJob {
     public void syncThumb2DBByDate(String date) {
         // 获取到临时点赞记录
         String tempThumbKey = RedisKeyUtil.getTempThumbKey(date); // key(time_slice): "field(user_id:blog_id)=value(is_thumb)"
-        Map<Object, Object> allTempThumbMap = redisTemplate
+        Map<Object, Object> allTempThumbMap = thumbRedisTemplate
                 .opsForHash()
                 .entries(tempThumbKey); // 把 hash 中的所有 "字段 <-> 值" 都放入到 Map 中
         boolean thumbMapEmpty = CollUtil.isEmpty(allTempThumbMap);
@@ -91,6 +107,7 @@ public class SyncThumb2DBJob {
         // 同步点赞到数据库
         Map<Long, Long> blogThumbCountMap = new HashMap<>();
         ArrayList<Thumb> thumbList = new ArrayList<>();
+        Map<Long, List<Long>> removedLikers = new HashMap<>(); // blogId -> 取消点赞的 userId
         LambdaQueryWrapper<Thumb> wrapper = new LambdaQueryWrapper<>();
         boolean needRemove = false;
         // key(time_slice): "field(user_id:blog_id)=value(is_thumb)"
@@ -111,6 +128,7 @@ public class SyncThumb2DBJob {
                 // 拼接查询条件批量删除
                 needRemove = true;
                 wrapper.or().eq(Thumb::getUserId, userId).eq(Thumb::getBlogId, blogId); // 累积所有需删除的记录
+                removedLikers.computeIfAbsent(blogId, k -> new ArrayList<>()).add(userId);
                 log.debug("Redis 点赞记录将减少 -: 用户标识 {}, 博文标识 {}, 点赞类型 {}", userId, blogId,thumbType);
             } else {
                 if (thumbType == ThumbTypeEnum.NON.getValue()) {
@@ -139,11 +157,19 @@ public class SyncThumb2DBJob {
         // 批量更新博客点赞量
         if (!blogThumbCountMap.isEmpty()) {
             blogMapper.batchUpdateThumbCount(blogThumbCountMap);
+            blogCache.invalidateAllAfterCommit(blogThumbCountMap.keySet()); // 事务提交后失效博文缓存中的旧点赞数
+        }
+
+        // 事务提交后增量更新博文点赞用户索引
+        Map<Long, List<Long>> addedLikers = new HashMap<>();
+        for (Thumb thumb : thumbList) {
+            addedLikers.computeIfAbsent(thumb.getBlogId(), k -> new ArrayList<>()).add(thumb.getUserId());
         }
+        blogLikersIndex.updateAfterCommit(addedLikers, removedLikers);
 
         // 异步删除
         Thread.startVirtualThread(() -> {
-            redisTemplate.delete(tempThumbKey);
+            thumbRedisTemplate.delete(tempThumbKey);
         });
     }
 
@@ -1,7 +1,10 @@
 package cn.com.edtechhub.workmassivelikes.job.cycle;
 
+import cn.com.edtechhub.workmassivelikes.cache.BlogLikersIndex;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
 import cn.com.edtechhub.workmassivelikes.mapper.BlogMapper;
 import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
+import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
 import cn.com.edtechhub.workmassivelikes.service.ThumbService;
 import cn.hutool.core.lang.Pair;
@@ -40,6 +43,18 @@ public class ThumbConsumer {
     @Resource
     private ThumbService thumbService;
 
+    /**
+     * 注入博文点赞用户索引
+     */
+    @Resource
+    private BlogLikersIndex blogLikersIndex;
+
+    /**
+     * 注入博文的三级缓存
+     */
+    @Resource
+    private TieredCache<Long, Blog> blogCache;
+
     /**
      * 批量处理监听器(消费者)
      */
@@ -79,6 +94,7 @@ public class ThumbConsumer {
                 ); // 最终得到分组结果
 
         List<Thumb> thumbs = new ArrayList<>(); // 用于记录每个点赞记录
+        Map<Long, List<Long>> removedLikers = new HashMap<>(); // 用于记录每篇博文取消点赞的用户
         Map<Long, Long> countMap = new ConcurrentHashMap<>(); // 用于记录每篇博文的点赞数量
         AtomicReference<Boolean> needRemove = new AtomicReference<>(false); // 用于记录是否需要删除数据库中的点赞记录, 这是一个原子类型, 这个变量是个标记位
 
@@ -116,6 +132,7 @@ public class ThumbConsumer {
                             .eq(Thumb::getUserId, event.getUserId())
                             .eq(Thumb::getBlogId, event.getBlogId())
                     ;
+                    removedLikers.computeIfAbsent(event.getBlogId(), k -> new ArrayList<>()).add(event.getUserId());
 
                     // 更新点赞数量
                     countMap.merge(event.getBlogId(), -1L, Long::sum);
@@ -134,6 +151,12 @@ public class ThumbConsumer {
         }
         batchInsertThumbs(thumbs);
         batchUpdateBlogs(countMap);
+
+        // 事务提交后增量更新博文点赞用户索引
+        Map<Long, List<Long>> addedLikers = thumbs
+                .stream()
+                .collect(Collectors.groupingBy(Thumb::getBlogId, Collectors.mapping(Thumb::getUserId, Collectors.toList())));
+        blogLikersIndex.updateAfterCommit(addedLikers, removedLikers);
     }
 
 //    /**
@@ -200,6 +223,7 @@ public class ThumbConsumer {
     public void batchUpdateBlogs(Map<Long, Long> countMap) {
         if (!countMap.isEmpty()) {
             blogMapper.batchUpdateThumbCount(countMap);
+            blogCache.invalidateAllAfterCommit(countMap.keySet()); // 事务提交后失效博文缓存中的旧点赞数
         }
     }
 
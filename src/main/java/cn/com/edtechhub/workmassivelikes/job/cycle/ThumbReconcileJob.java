@@ -1,10 +1,11 @@
 package cn.com.edtechhub.workmassivelikes.job.cycle;
 
+import cn.com.edtechhub.workmassivelikes.cache.LongHashSet;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbKeyLayout;
 import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
 import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
 import cn.com.edtechhub.workmassivelikes.service.ThumbService;
-import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.shade.javax.annotation.Resource;
 import org.springframework.data.redis.core.Cursor;
@@ -15,11 +16,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.List;
 
 /**
  * 定时将 MQ 中的消息同步到 MySQL 中的补偿措施
@@ -36,6 +33,12 @@ public class ThumbReconcileJob {
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
     /**
      * 注入点赞服务依赖
      */
@@ -56,7 +59,7 @@ public class ThumbReconcileJob {
         log.debug("开始补偿临时数据");
         long startTime = System.currentTimeMillis();
 
-        Set<Long> userIds = new HashSet<>(); // 用于记录所有在 Redis 中点过赞用户的 id
+        LongHashSet userIds = new LongHashSet(); // 用于记录所有在 Redis 中点过赞用户的 id(点赞集合都使用 long[] 保存, 避免为每个 id 装箱)
         String pattern = ThumbConstant.USER_THUMB_KEY_PREFIX + "*";
         try (Cursor<String> cursor = redisTemplate.scan(
                 ScanOptions
@@ -66,28 +69,33 @@ public class ThumbReconcileJob {
                         .build()) // 最终只得到 key 名的列表
         ) { // 从 Redis 中 scan 出所有匹配的 key 并提取 userId
             while (cursor.hasNext()) {
-                String key = cursor.next();
-                Long userId = Long.valueOf(key.replace(ThumbConstant.USER_THUMB_KEY_PREFIX, "")); // 从 key 中去掉 USER_THUMB_KEY_PREFIX 前缀(其实就是用 "" 替换掉前缀)
-                userIds.add(userId);
+                Long userId = thumbKeyLayout.parseUserId(cursor.next()); // 从 key 中解析出 userId, thumb:temp:* 等不是用户点赞记录的 key 返回 null
+                if (userId != null) {
+                    userIds.add(userId); // 分桶布局中同一个用户有多个 key, 这里自然去重
+                }
             }
         }
 
         // 逐用户比对
         userIds.forEach(userId -> {
-            Set<Long> redisBlogIds = redisTemplate.opsForHash().keys(ThumbConstant.USER_THUMB_KEY_PREFIX + userId).stream().map(obj -> Long.valueOf(obj.toString())).collect(Collectors.toSet()); // 获取该用户在 Redis 中的所有点赞记录
-            Set<Long> mysqlBlogIds = Optional.ofNullable(
-                            thumbService
-                                    .lambdaQuery()
-                                    .eq(Thumb::getUserId, userId)
-                                    .list()
-                    )
-                    .orElse(new ArrayList<>())
-                    .stream()
-                    .map(Thumb::getBlogId)
-                    .collect(Collectors.toSet()); // 获取该用户在 MySQL 中的所有点赞记录
+            LongHashSet redisBlogIds = thumbKeyLayout.blogIds(String.valueOf(userId)); // 获取该用户在 Redis 中的所有点赞记录(分桶布局时读取每一个桶)
+            List<Thumb> mysqlThumbs = thumbService
+                    .lambdaQuery()
+                    .select(Thumb::getBlogId)
+                    .eq(Thumb::getUserId, userId)
+                    .list();
+            LongHashSet mysqlBlogIds = new LongHashSet(mysqlThumbs.size()); // 获取该用户在 MySQL 中的所有点赞记录
+            for (Thumb thumb : mysqlThumbs) {
+                mysqlBlogIds.add(thumb.getBlogId());
+            }
 
             // 计算差异
-            Set<Long> diffBlogIds = Sets.difference(redisBlogIds, mysqlBlogIds);
+            LongHashSet diffBlogIds = new LongHashSet();
+            redisBlogIds.forEach(blogId -> {
+                if (!mysqlBlogIds.contains(blogId)) {
+                    diffBlogIds.add(blogId);
+                }
+            });
 
             // 发送补偿事件
             sendCompensationEvents(userId, diffBlogIds);
@@ -99,7 +107,7 @@ public class ThumbReconcileJob {
     /**
      * 发送补偿事件到 Pulsar(把 Redis 中缺失的消息再次补偿出去)
      */
-    private void sendCompensationEvents(Long userId, Set<Long> blogIds) {
+    private void sendCompensationEvents(Long userId, LongHashSet blogIds) {
         blogIds.forEach(blogId -> {
             ThumbEventDto thumbEvent = new ThumbEventDto(userId, blogId, ThumbEventDto.EventType.INCR, LocalDateTime.now());
             pulsarTemplate
@@ -0,0 +1,94 @@
+package cn.com.edtechhub.workmassivelikes.job.cycle;
+
+import cn.com.edtechhub.workmassivelikes.cache.Snapshottable;
+import cn.com.edtechhub.workmassivelikes.cache.TopK;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 定时把热点探测器保存为本地快照, 并在启动时恢复
+ * 否则每次发布后 TopK 都从空开始, 最初的几分钟所有热点都会被当作冷数据, 全部流量直接打到 Redis 上
+ * 恢复后的热点用户在下一次请求时会重新写入 Caffeine, 因此 localCache 本身不需要保存
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Component
+@Slf4j
+public class TopKSnapshotJob {
+
+    @Resource
+    private TopK hotKeyDetector;
+
+    @Resource
+    private TopK hotBlogDetector;
+
+    /**
+     * 快照文件所在目录
+     */
+    @Value("${cache.hot-key.snapshot.dir:data/hot-key}")
+    private String snapshotDir;
+
+    /**
+     * 快照计数衰减一半所需的毫秒数(与 CleanCaffeineHotKeysJob 的衰减周期一致)
+     */
+    @Value("${cache.hot-key.snapshot.half-life-millis:20000}")
+    private long halfLifeMillis;
+
+    /**
+     * 启动时恢复快照
+     */
+    @PostConstruct
+    public void restore() {
+        load(hotKeyDetector, "user");
+        load(hotBlogDetector, "blog");
+    }
+
+    @Scheduled(fixedRateString = "${cache.hot-key.snapshot.interval-millis:30000}")
+    public void snapshot() {
+        save(hotKeyDetector, "user");
+        save(hotBlogDetector, "blog");
+    }
+
+    /**
+     * 关闭前保存一次快照, 滚动发布时新实例可以直接接着使用
+     */
+    @PreDestroy
+    public void destroy() {
+        snapshot();
+    }
+
+    private void load(TopK topK, String name) {
+        if (!(topK instanceof Snapshottable snapshottable)) {
+            log.debug("{} 热点探测器的实现不支持快照", name);
+            return;
+        }
+        Path file = Path.of(snapshotDir, name + ".snapshot");
+        try {
+            boolean loaded = snapshottable.loadSnapshot(file, halfLifeMillis);
+            log.debug("{} 热点探测器快照 {} 恢复{}", name, file, loaded ? "成功" : "跳过(不存在或者参数不匹配)");
+        } catch (IOException | RuntimeException e) {
+            log.warn("{} 热点探测器快照 {} 恢复失败, 从空状态开始", name, file, e);
+        }
+    }
+
+    private void save(TopK topK, String name) {
+        if (!(topK instanceof Snapshottable snapshottable)) {
+            return;
+        }
+        Path file = Path.of(snapshotDir, name + ".snapshot");
+        try {
+            snapshottable.saveSnapshot(file);
+        } catch (IOException e) {
+            log.warn("{} 热点探测器快照 {} 保存失败", name, file, e);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package cn.com.edtechhub.workmassivelikes.request;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 博文点赞用户查询请求
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Data
+public class BlogLikersRequest implements Serializable {
+
+    /**
+     * 需要查询的博客 ID
+     */
+    private Long blogId;
+
+    /**
+     * 需要判断是否点赞过的用户 ID 列表(例如当前用户的好友)
+     */
+    private List<Long> userIds;
+
+    /// 序列化字段 ///
+    private static final long serialVersionUID = 1L;
+
+}
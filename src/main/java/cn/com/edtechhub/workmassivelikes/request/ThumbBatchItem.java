@@ -0,0 +1,29 @@
+package cn.com.edtechhub.workmassivelikes.request;
+
+import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量点赞请求中的一项操作
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Data
+public class ThumbBatchItem implements Serializable {
+
+    /**
+     * 需要操作的博客 ID
+     */
+    private Long blogId;
+
+    /**
+     * 操作类型, INCR 为确认点赞, DECR 为取消点赞
+     */
+    private ThumbEventDto.EventType type;
+
+    /// 序列化字段 ///
+    private static final long serialVersionUID = 1L;
+
+}
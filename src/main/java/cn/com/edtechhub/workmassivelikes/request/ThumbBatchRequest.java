@@ -0,0 +1,24 @@
+package cn.com.edtechhub.workmassivelikes.request;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量点赞请求(按顺序执行, 例如同步离线期间的点赞/取消点赞)
+ *
+ * @author <a href="https://github.com/limou3434">limou3434</a>
+ */
+@Data
+public class ThumbBatchRequest implements Serializable {
+
+    /**
+     * 需要执行的操作列表
+     */
+    private List<ThumbBatchItem> items;
+
+    /// 序列化字段 ///
+    private static final long serialVersionUID = 1L;
+
+}
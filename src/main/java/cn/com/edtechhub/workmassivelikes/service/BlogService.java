@@ -31,4 +31,14 @@ public interface BlogService extends IService<Blog> {
      */
     List<BlogDto> blogSearchIncludeHasThumbById(Long blogId);
 
+    /**
+     * 查询点赞过博文的不同用户个数
+     */
+    Long blogLikersCount(Long blogId);
+
+    /**
+     * 查询给定用户中点赞过博文的用户
+     */
+    List<Long> blogLikersInclude(BlogLikersRequest blogLikersRequest);
+
 }
@@ -1,10 +1,13 @@
 package cn.com.edtechhub.workmassivelikes.service;
 
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
+import cn.com.edtechhub.workmassivelikes.request.ThumbBatchItem;
 import cn.com.edtechhub.workmassivelikes.request.ThumbDoRequest;
 import cn.com.edtechhub.workmassivelikes.request.ThumbUnDoRequest;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * 点赞服务声明
  *
@@ -52,4 +55,9 @@ public interface ThumbService extends IService<Thumb> {
      */
     Boolean thumbAddUnDoUseMQ(Long blogId);
 
+    /**
+     * 批量确认/取消点赞(基于 MQ), 返回与 items 一一对应的执行结果, false 代表重复操作或者点赞的博文不存在(只有这一项失败, 不影响其他项)
+     */
+    List<Boolean> thumbBatchUseMQ(List<ThumbBatchItem> items);
+
 }
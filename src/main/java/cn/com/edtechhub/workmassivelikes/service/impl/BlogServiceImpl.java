@@ -1,10 +1,21 @@
 package cn.com.edtechhub.workmassivelikes.service.impl;
 
-import cn.com.edtechhub.workmassivelikes.contant.ThumbConstant;
+import cn.com.edtechhub.workmassivelikes.cache.BlogLikersIndex;
+import cn.com.edtechhub.workmassivelikes.cache.LongHashSet;
+import cn.com.edtechhub.workmassivelikes.cache.SingleFlight;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbBloomFilter;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbClientSideCache;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbKeyLayout;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
+import cn.com.edtechhub.workmassivelikes.cache.TopK;
+import cn.com.edtechhub.workmassivelikes.cache.UserThumbNearCache;
+import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
+import cn.com.edtechhub.workmassivelikes.exception.BusinessException;
 import cn.com.edtechhub.workmassivelikes.mapper.BlogMapper;
 import cn.com.edtechhub.workmassivelikes.model.dto.BlogDto;
 import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
+import cn.com.edtechhub.workmassivelikes.request.BlogLikersRequest;
 import cn.com.edtechhub.workmassivelikes.request.BlogSearchRequest;
 import cn.com.edtechhub.workmassivelikes.service.BlogService;
 import cn.com.edtechhub.workmassivelikes.service.ThumbService;
@@ -14,16 +25,16 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * 博客服务实现
@@ -31,6 +42,7 @@ import java.util.stream.Collectors;
  * @author <a href="https://github.com/limou3434">limou3434</a>
  */
 @Service
+@Slf4j
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements BlogService {
 
     @Resource
@@ -41,10 +53,52 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
     ThumbService thumbService;
 
     /**
-     * 注入 Redis 客户端
+     * 注入用户点赞记录的键布局
      */
     @Resource
-    RedisTemplate<String, Object> redisTemplate;
+    ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 注入热点博文 TopK 数据结构
+     */
+    @Resource
+    TopK hotBlogDetector;
+
+    /**
+     * 注入博文的三级缓存
+     */
+    @Resource
+    TieredCache<Long, Blog> blogCache;
+
+    /**
+     * 注入博文分页查询的请求合并
+     */
+    @Resource
+    SingleFlight<BlogSearchRequest, List<Blog>> blogSearchFlight;
+
+    /**
+     * 注入用户点赞集合的近端缓存
+     */
+    @Resource
+    UserThumbNearCache userThumbNearCache;
+
+    /**
+     * 注入用户点赞记录的 Redis 客户端缓存
+     */
+    @Resource
+    ThumbClientSideCache thumbClientSideCache;
+
+    /**
+     * 注入已点赞组合的布隆过滤器
+     */
+    @Resource
+    ThumbBloomFilter thumbBloomFilter;
+
+    /**
+     * 注入博文点赞用户索引
+     */
+    @Resource
+    BlogLikersIndex blogLikersIndex;
 
     @Override
     public List<Blog> blogSearch(BlogSearchRequest blogSearchRequest) {
@@ -57,23 +111,96 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
 
     @Override
     public List<BlogDto> blogSearchIncludeHasThumb(BlogSearchRequest blogSearchRequest) {
-        List<Blog> blogList = this.blogSearch(blogSearchRequest);
+        // 相同的查询条件同时只查询一次数据库, 结果在并发请求之间共享, 因此复制为不可变列表
+        List<Blog> blogList = blogSearchFlight.execute(blogSearchRequest, () -> List.copyOf(this.blogSearch(blogSearchRequest)));
+        for (Blog blog : blogList) {
+            hotBlogDetector.add(blog.getId(), 1); // 每一次博文读取都计入热点博文探测
+        }
+        return this.toBlogDtoList(blogList);
+    }
 
-        // 改为在 Redis 中进行点赞情况查询
-        List<Object> blogIdList = blogList
-                .stream()
-                .map(blog -> blog.getId().toString())
-                .collect(Collectors.toList()); // 进一步筛选出 blogId 组成的 List
+    @Override
+    public List<BlogDto> blogSearchIncludeHasThumbById(Long blogId) {
+        if (blogId == null) {
+            return List.of();
+        }
+
+        // 每一次博文读取都计入热点博文探测, 博文本身从三级缓存中读取(本地 -> Redis -> MySQL), 不存在的博文也会被短暂缓存
+        hotBlogDetector.add(blogId, 1);
+        Blog blog = blogCache.get(blogId);
+        return this.toBlogDtoList(blog == null ? List.of() : List.of(blog));
+    }
 
-        List<Object> thumbList = redisTemplate.opsForHash().multiGet( // multiGet 即是对 hMGet 命令的封装
-                ThumbConstant.USER_THUMB_KEY_PREFIX + userService.userStatus().getUserId(), // 键名
-                blogIdList // 需要查询的 field 组成的列表
-        ); // 到这里就获取到 Redis 中的当前用户对于所有的博客的点赞情况
+    @Override
+    public Long blogLikersCount(Long blogId) {
+        if (blogId == null) {
+            throw new BusinessException(CodeBindMessageEnum.PARAMS_ERROR, "博文标识不能为空");
+        }
+        return blogLikersIndex.count(blogId);
+    }
+
+    @Override
+    public List<Long> blogLikersInclude(BlogLikersRequest blogLikersRequest) {
+        Long blogId = blogLikersRequest.getBlogId();
+        List<Long> userIds = blogLikersRequest.getUserIds();
+        if (blogId == null) {
+            throw new BusinessException(CodeBindMessageEnum.PARAMS_ERROR, "博文标识不能为空");
+        }
+        if (userIds == null || userIds.isEmpty()) {
+            return List.of();
+        }
+        return blogLikersIndex.retain(blogId, userIds);
+    }
+
+    /**
+     * 把博文列表转化为包含当前用户点赞情况的博文列表
+     */
+    private List<BlogDto> toBlogDtoList(List<Blog> blogList) {
+        if (blogList.isEmpty()) {
+            return List.of();
+        }
 
         // 查询当前用户对所有文章列表的点赞情况(提前从数据中获取所有的点赞记录, 避免每篇文章都需要遍历查询一次)
         Map<Long, Boolean> blogIdHasThumbMap = new HashMap<>(); // 由博文 id 和当前用户是否点赞组成
-        for (int i = 0; i < thumbList.size(); i++) {
-            blogIdHasThumbMap.put(Long.valueOf(blogIdList.get(i).toString()), thumbList.get(i) != null);
+        String userId = userService.userStatus().getUserId();
+
+        // 布隆过滤器判定一定没有点赞的博文直接得到结果, 只有可能点赞过的博文才需要继续查询, 全部都没有点赞时不访问 Redis(尽力而为, 丢失广播时在下一次重建前可能显示为未点赞)
+        long userIdValue = Long.parseLong(userId);
+        List<Blog> candidateList = new ArrayList<>();
+        for (Blog blog : blogList) {
+            if (thumbBloomFilter.mightContain(userIdValue, blog.getId())) {
+                candidateList.add(blog);
+            } else {
+                blogIdHasThumbMap.put(blog.getId(), false);
+            }
+        }
+
+        // 开启了 Redis 客户端缓存时, 使用经过客户端缓存的 HMGET, 由 Redis 推送失效消息, 否则优先使用本地缓存的点赞集合
+        LongHashSet likedBlogs = candidateList.isEmpty() || thumbClientSideCache.isEnabled() ? null : userThumbNearCache.get(userId);
+        if (candidateList.isEmpty()) {
+            log.debug("用户 {} 的本页博文全部由布隆过滤器判定为未点赞, 不需要访问 Redis", userId);
+        } else if (thumbClientSideCache.isEnabled()) {
+            List<Long> blogIdList = candidateList.stream().map(Blog::getId).toList();
+            List<Boolean> hasThumbList = thumbClientSideCache.hasThumb(userId, blogIdList);
+            for (int i = 0; i < hasThumbList.size(); i++) {
+                blogIdHasThumbMap.put(blogIdList.get(i), hasThumbList.get(i));
+            }
+        }
+
+        // 本地缓存的点赞集合不需要访问 Redis
+        else if (likedBlogs != null) {
+            for (Blog blog : candidateList) {
+                blogIdHasThumbMap.put(blog.getId(), likedBlogs.contains(blog.getId()));
+            }
+        }
+
+        // 点赞数过多没有缓存的用户, 改为在 Redis 中进行点赞情况查询
+        else {
+            List<Long> blogIdList = candidateList.stream().map(Blog::getId).toList(); // 进一步筛选出 blogId 组成的 List
+            List<Boolean> hasThumbList = thumbKeyLayout.hasThumb(userId, blogIdList); // 平铺布局执行 HMGET, 分桶布局和位图布局按各自的方式批量查询
+            for (int i = 0; i < hasThumbList.size(); i++) {
+                blogIdHasThumbMap.put(blogIdList.get(i), hasThumbList.get(i));
+            }
         }
 
         return blogList
@@ -87,13 +214,6 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements Bl
                 ;
     }
 
-    @Override
-    public List<BlogDto> blogSearchIncludeHasThumbById(Long blogId) {
-        BlogSearchRequest blogSearchRequest = new BlogSearchRequest();
-        blogSearchRequest.setId(blogId);
-        return this.blogSearchIncludeHasThumb(blogSearchRequest);
-    }
-
     /**
      * 获取查询封装器的方法
      */
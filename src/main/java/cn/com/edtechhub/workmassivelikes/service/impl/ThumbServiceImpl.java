@@ -1,8 +1,14 @@
 package cn.com.edtechhub.workmassivelikes.service.impl;
 
-import cn.com.edtechhub.workmassivelikes.cache.AddResult;
-import cn.com.edtechhub.workmassivelikes.cache.HeavyKeeper;
-import cn.com.edtechhub.workmassivelikes.contant.LuaScriptConstant;
+import cn.com.edtechhub.workmassivelikes.cache.BlogLikersIndex;
+import cn.com.edtechhub.workmassivelikes.cache.ClusterHotKeys;
+import cn.com.edtechhub.workmassivelikes.cache.HotBlogThumbCounter;
+import cn.com.edtechhub.workmassivelikes.cache.LongHashSet;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbChangeBroadcaster;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbKeyLayout;
+import cn.com.edtechhub.workmassivelikes.cache.ThumbMicroBatcher;
+import cn.com.edtechhub.workmassivelikes.cache.TieredCache;
+import cn.com.edtechhub.workmassivelikes.cache.TopK;
 import cn.com.edtechhub.workmassivelikes.enums.CodeBindMessageEnum;
 import cn.com.edtechhub.workmassivelikes.enums.LuaStatusEnum;
 import cn.com.edtechhub.workmassivelikes.exception.BusinessException;
@@ -10,6 +16,7 @@ import cn.com.edtechhub.workmassivelikes.mapper.ThumbMapper;
 import cn.com.edtechhub.workmassivelikes.model.dto.ThumbEventDto;
 import cn.com.edtechhub.workmassivelikes.model.entity.Blog;
 import cn.com.edtechhub.workmassivelikes.model.entity.Thumb;
+import cn.com.edtechhub.workmassivelikes.request.ThumbBatchItem;
 import cn.com.edtechhub.workmassivelikes.service.BlogService;
 import cn.com.edtechhub.workmassivelikes.service.ThumbService;
 import cn.com.edtechhub.workmassivelikes.service.UserService;
@@ -20,14 +27,19 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.benmanes.caffeine.cache.Cache;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.pulsar.core.PulsarTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /*
 点赞逻辑是整个项目的优化重点:
@@ -267,23 +279,83 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
     TransactionTemplate transactionTemplate;
 
     /**
-     * 注入 Redis 客户端依赖
+     * 注入 Redis 客户端依赖(点赞键空间专用, 值为十进制整数文本)
      */
     @Resource
-    RedisTemplate<String, Object> redisTemplate;
+    RedisTemplate<String, Long> thumbRedisTemplate;
 
     /**
      * 初始化 TopK 数据结构
      */
     @Resource
-    HeavyKeeper hotKeyDetector;
+    TopK hotKeyDetector;
 
     /**
-     * 初始化 Caffeine 本地缓存
+     * 初始化热点博文 TopK 数据结构
+     */
+    @Resource
+    TopK hotBlogDetector;
+
+    /**
+     * 注入热点博文点赞数聚合器
+     */
+    @Resource
+    HotBlogThumbCounter hotBlogThumbCounter;
+
+    /**
+     * 注入博文的三级缓存
+     */
+    @Resource
+    TieredCache<Long, Blog> blogCache;
+
+    /**
+     * 注入集群维度的热点用户集合
+     */
+    @Resource
+    ClusterHotKeys clusterHotUsers;
+
+    /**
+     * 注入集群维度的热点博文集合
+     */
+    @Resource
+    ClusterHotKeys clusterHotBlogs;
+
+    /**
+     * 注入点赞集合变化的跨实例广播(近端缓存失效和布隆过滤器添加)
+     */
+    @Resource
+    ThumbChangeBroadcaster thumbChangeBroadcaster;
+
+    /**
+     * 注入博文点赞用户索引
+     */
+    @Resource
+    BlogLikersIndex blogLikersIndex;
+
+    /**
+     * 初始化 Caffeine 本地缓存(userId -> 热点用户已经点赞的 blogId 集合)
      */
     @Resource
     Cache<String, Object> localCache;
 
+    /**
+     * 批量点赞单次最多的操作项数
+     */
+    @Value("${thumb.batch.max-size:100}")
+    private int batchMaxSize;
+
+    /**
+     * 注入用户点赞记录的键布局
+     */
+    @Resource
+    private ThumbKeyLayout thumbKeyLayout;
+
+    /**
+     * 注入点赞操作的微批合并
+     */
+    @Resource
+    private ThumbMicroBatcher thumbMicroBatcher;
+
     /**
      * 注入 Pulsar 客户端
      */
@@ -293,11 +365,16 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
     @Override
     public Boolean thumbAddDoUseMySQL(Long blogId) {
         String userId = userService.userStatus().getUserId();
+        boolean isHotBlog = hotBlogDetector.add(blogId, 1) || clusterHotBlogs.contains(blogId); // 热点博文的点赞数在本地聚合后批量写入, 不在事务中更新热点行
+        // 非热点博文由 "thumb_count + 1" 更新的行数确认博文存在, 热点博文跳过了这次更新, 需要先通过博文缓存确认(热点博文几乎总是命中本地缓存)
+        if (isHotBlog && blogCache.get(blogId) == null) {
+            throw new BusinessException(CodeBindMessageEnum.NOT_FOUND_ERROR, "博文 " + blogId + " 不存在");
+        }
         // 点赞的时候需要对同一个用户加锁, 否则用户多地登录同时点赞会导致数据不一致性
         synchronized (userId.intern()) { // intern() 把这个字符串变成 JVM 字符串常量池里的唯一对象, 避免每个线程持有的 String 对象不同
             // TODO: 这里的锁是本地锁, 在多实例的分布式场景下失效, 可以使用分布式锁替代(Redisson)
             // 编程式事务(在事务内加锁可能导致锁失效, 线程 A 获取锁 -> 执行数据库操作 -> 释放锁 -> 事务提交, 但是如果线程 B 在 A 释放锁后立即获取锁, 在默认的隔离级别可重复读下, 由于在 A 提交前 B 已经开启了事务, 所以 B 此时只能读到 A 操作前的数据, 导致重复操作, 因此必须让锁的作用域完全包裹事务操作)
-            return transactionTemplate.execute( // TODO: 可以在这里执行事务方法, 避免手动写事务
+            Boolean result = transactionTemplate.execute( // TODO: 可以在这里执行事务方法, 避免手动写事务
                     status -> {
                         // 检查是否点赞
                         boolean exists = this.lambdaQuery()
@@ -310,8 +387,8 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
                             throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已确认点赞");
                         }
 
-                        // 更新博客表中对应文章的点赞次数
-                        boolean update = blogService.lambdaUpdate()
+                        // 更新博客表中对应文章的点赞次数(热点博文跳过, 在事务提交后交给本地聚合)
+                        boolean update = isHotBlog || blogService.lambdaUpdate()
                                 .eq(Blog::getId, blogId)
                                 .setSql("thumb_count = thumb_count + 1")
                                 .update();
@@ -322,19 +399,29 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
                         thumb.setBlogId(blogId);
                         return update && this.save(thumb); // 更新成功才执行
                     });
+            if (isHotBlog && Boolean.TRUE.equals(result)) {
+                hotBlogThumbCounter.increase(blogId, 1);
+            } else if (Boolean.TRUE.equals(result)) {
+                blogCache.invalidate(blogId); // 点赞数已经直接写入数据库, 失效博文缓存中的旧值(热点博文在聚合写入后失效)
+            }
+            if (Boolean.TRUE.equals(result)) {
+                blogLikersIndex.update(Map.of(blogId, List.of(Long.valueOf(userId))), Map.of());
+            }
+            return result;
         }
     }
 
     @Override
     public Boolean thumbAddUnDoUseMySQL(Long blogId) {
         String userId = userService.userStatus().getUserId();
+        boolean isHotBlog = hotBlogDetector.add(blogId, 1) || clusterHotBlogs.contains(blogId);
         // 点赞的时候需要对同一个用户加锁, 否则用户多地登录同时点赞会导致数据不一致性
         synchronized (userId.intern()) { // intern() 把这个字符串变成 JVM 字符串常量池里的唯一对象, 避免每个线程持有的 String 对象不同
 
             // TODO: 这里的锁是本地锁, 在多实例的分布式场景下失效, 可以使用分布式锁替代(Redisson)
 
             // 编程式事务(在事务内加锁可能导致锁失效, 线程 A 获取锁 -> 执行数据库操作 -> 释放锁 -> 事务提交, 但是如果线程 B 在 A 释放锁后立即获取锁, 在默认的隔离级别可重复读下, 由于在 A 提交前 B 已经开启了事务, 所以 B 此时只能读到 A 操作前的数据, 导致重复操作, 因此必须让锁的作用域完全包裹事务操作)
-            return transactionTemplate.execute( // TODO: 可以在这里执行事务方法, 避免手动写事务
+            Boolean result = transactionTemplate.execute( // TODO: 可以在这里执行事务方法, 避免手动写事务
                     status -> {
                         // 检查是否点赞
                         Thumb thumb = this.lambdaQuery()
@@ -348,8 +435,8 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
 
                         Long thumbId = thumb.getId();
 
-                        // 更新博客表中对应文章的点赞次数
-                        boolean update = blogService.lambdaUpdate()
+                        // 更新博客表中对应文章的点赞次数(热点博文跳过, 在事务提交后交给本地聚合)
+                        boolean update = isHotBlog || blogService.lambdaUpdate()
                                 .eq(Blog::getId, blogId)
                                 .setSql("thumb_count = thumb_count - 1")
                                 .update();
@@ -357,22 +444,22 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
                         // 删除一个点赞记录
                         return update && this.removeById(thumbId); // 更新成功才执行
                     });
+            if (isHotBlog && Boolean.TRUE.equals(result)) {
+                hotBlogThumbCounter.increase(blogId, -1);
+            } else if (Boolean.TRUE.equals(result)) {
+                blogCache.invalidate(blogId); // 点赞数已经直接写入数据库, 失效博文缓存中的旧值(热点博文在聚合写入后失效)
+            }
+            if (Boolean.TRUE.equals(result)) {
+                blogLikersIndex.update(Map.of(), Map.of(blogId, List.of(Long.valueOf(userId))));
+            }
+            return result;
         }
     }
 
     @Override
     public Boolean thumbAddDoUseRedis(Long blogId) {
         String userId = userService.userStatus().getUserId();
-        String tempThumbKey = RedisKeyUtil.getTempThumbKey(getTimeSlice()); // key(time_slice) -> "field(user_id:blog_id)=value(is_thumb)", ...
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(userId); // key(user_id) -> "field(blog_id)=value(thumb_id)", ...
-
-        // 执行 Lua 脚本
-        long result = redisTemplate.execute(
-                LuaScriptConstant.THUMB_SCRIPT,
-                Arrays.asList(tempThumbKey, userThumbKey),
-                Long.valueOf(userId), // 转回 Long 否则会把 "" 本身也计算进去
-                blogId
-        );
+        long result = this.executeThumbScript(userId, blogId);
 
         if (LuaStatusEnum.FAIL.getValue() == result) {
             throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已确认点赞");
@@ -384,84 +471,114 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
     @Override
     public Boolean thumbAddUnDoUseRedis(Long blogId) {
         String userId = userService.userStatus().getUserId();
+        hotBlogDetector.add(blogId, 1);
+
         String tempThumbKey = RedisKeyUtil.getTempThumbKey(getTimeSlice());
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(userId);
+        ThumbKeyLayout.ThumbSlot slot = thumbKeyLayout.findSlot(userId, blogId); // 位图布局中博文没有序号时一定没有点赞
+        if (slot == null) {
+            throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已取消点赞");
+        }
 
         // 执行 Lua 脚本
-        long result = redisTemplate.execute(
-                LuaScriptConstant.UNTHUMB_SCRIPT,
-                Arrays.asList(tempThumbKey, userThumbKey),
+        long result = thumbRedisTemplate.execute(
+                thumbKeyLayout.unthumbScript(),
+                Arrays.asList(tempThumbKey, slot.key()),
                 Long.valueOf(userId),
-                blogId
+                blogId,
+                slot.field()
         );
 
         if (result == LuaStatusEnum.FAIL.getValue()) {
             throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已取消点赞");
         }
 
+        // 点赞集合发生了变化, 通知所有实例失效近端缓存
+        if (LuaStatusEnum.SUCCESS.getValue() == result) {
+            thumbChangeBroadcaster.changed(userId, List.of(), List.of(blogId));
+        }
+
         return LuaStatusEnum.SUCCESS.getValue() == result;
     }
 
     @Override
     public Boolean thumbAddDoUseCaffeine(Long blogId) {
         String userId = userService.userStatus().getUserId();
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(userId); // key(user_id) -> "field(blog_id)=value(thumb_id)", ...
 
-        // 添加/更新新的元素
-        AddResult addResult = hotKeyDetector.add(userId, 1);
+        // 添加/更新新的元素(使用 long 类型的 key, 热点用户的判断不分配任何对象), 本实例或者集群中任意一处判定为热点即为热点
+        long userIdValue = Long.parseLong(userId);
+        boolean isHotKey = hotKeyDetector.add(userIdValue, 1) || clusterHotUsers.contains(userIdValue);
+
+        // list() 需要复制并排序整个 TopK, 只在确实开启调试日志时才计算
+        if (log.isDebugEnabled()) {
+            log.debug("当前操作 {}", userId);
+            log.debug("是否热点 {}", isHotKey);
+            log.debug("TopK list {}", hotKeyDetector.list());
+            log.debug("TopK expelled {}", hotKeyDetector.expelled());
+        }
 
-        log.debug("当前操作 {}", addResult.getCurrentKey());
-        log.debug("被挤出的 {}", addResult.getExpelledKey());
-        log.debug("是否热点 {}", addResult.isHotKey());
-        log.debug("TopK list {}", hotKeyDetector.list());
-        log.debug("TopK expelled {}", hotKeyDetector.expelled());
+        // 热点用户在 Caffeine 中保存已经点赞的 blogId 集合, 曾经是热点的用户只要集合还在就继续维护, 保证与 Redis 同步
+        LongHashSet likedBlogs = isHotKey
+                ? (LongHashSet) localCache.get(userId, key -> new LongHashSet())
+                : (LongHashSet) localCache.getIfPresent(userId);
+
+        // 如果当前元素不是热点, 则直接进行点赞操作即可
+        if (likedBlogs == null) {
+            return this.thumbAddDoUseRedis(blogId);
+        }
 
-        // 如果当前元素是热点, 则需要把当前元素的 key 存储到 Caffeine 中
-        if (addResult.isHotKey()) {
-            // 如果 Caffeine 中已经存在了, 则表示用户已经点赞过了
-            if (localCache.getIfPresent(userId) != null) {
+        // 对集合加锁, 保证同一个用户的 "判断 + Lua 脚本 + 修改集合" 不会与取消点赞交错, 导致集合中残留已经取消的 blogId
+        synchronized (likedBlogs) {
+            // 如果集合中已经存在了, 则表示用户已经点赞过了, 不需要访问 Redis
+            if (likedBlogs.contains(blogId)) {
                 log.debug("用户 {} 反复点赞情况较多, 可以警告或封禁", userId);
                 throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已确认点赞");
             }
-            // 如果 Caffeine 中不存在, 则表示用户没有点赞过, 需要把当前元素的 key 存储到 Caffeine 中
-            else {
-                localCache.put(userId, userThumbKey);
+
+            // 集合中不存在只说明本地不知道(用户成为热点之前的点赞不在集合中), 仍然需要由 Lua 脚本判断
+            long result = this.executeThumbScript(userId, blogId);
+
+            // 无论本次点赞成功还是 Redis 中早已点赞, 该博文都处于已点赞状态, 之后的重复点赞直接在本地拒绝
+            likedBlogs.add(blogId);
+            if (LuaStatusEnum.FAIL.getValue() == result) {
+                throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已确认点赞");
             }
+            return LuaStatusEnum.SUCCESS.getValue() == result;
         }
-
-        // 如果当前元素不是热点, 则直接进行点赞操作即可
-        return this.thumbAddDoUseRedis(blogId);
     }
 
     @Override
     public Boolean thumbAddUnDoUseCaffeine(Long blogId) {
         String userId = userService.userStatus().getUserId();
 
-        // 如果用户在 Caffeine 中存在，则移除
-        if (localCache.getIfPresent(userId) != null) {
-            localCache.invalidate(userId);
-            log.debug("用户 {} 取消点赞, 移除 Caffeine 缓存", userId);
+        // 如果用户在 Caffeine 中存在已点赞集合, 则只移除本次取消的博文, 不影响该用户其他博文的点赞状态
+        if (!(localCache.getIfPresent(userId) instanceof LongHashSet likedBlogs)) {
+            return this.thumbAddUnDoUseRedis(blogId);
+        }
+        synchronized (likedBlogs) {
+            // 先移除再访问 Redis, 即使 Lua 脚本执行失败, 集合中缺少元素也只会多一次 Redis 往返, 不会误判
+            likedBlogs.remove(blogId);
+            log.debug("用户 {} 取消点赞博客 {}, 移除 Caffeine 缓存", userId, blogId);
+            return this.thumbAddUnDoUseRedis(blogId);
         }
-
-        // 进行取消点赞的实际操作
-        return this.thumbAddUnDoUseRedis(blogId);
     }
 
     public Boolean thumbAddDoUseMQ(Long blogId) {
         String userId = userService.userStatus().getUserId();
+        hotBlogDetector.add(blogId, 1);
 
         log.debug("用户 {} 确认点赞博客 {}", userId, blogId);
 
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(userId);
+        ThumbKeyLayout.ThumbSlot slot = thumbKeyLayout.thumbSlot(userId, blogId);
 
-        // 执行 Lua 脚本
-        long result = redisTemplate.execute(
-                LuaScriptConstant.THUMB_SCRIPT_MQ,
-                List.of(userThumbKey),
-                blogId
-        );
+        // 执行 Lua 脚本(与其他线程同时提交的操作合并为一次脚本调用)
+        long result = thumbMicroBatcher.execute(slot, ThumbEventDto.EventType.INCR);
 
+        // 点赞集合发生了变化, 通知所有实例失效近端缓存并加入布隆过滤器, 早已点赞时只修复本实例的布隆过滤器, 不广播
+        if (LuaStatusEnum.SUCCESS.getValue() == result) {
+            thumbChangeBroadcaster.changed(userId, List.of(blogId), List.of());
+        }
         if (LuaStatusEnum.FAIL.getValue() == result) {
+            thumbChangeBroadcaster.alreadyLiked(userId, List.of(blogId));
             throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已确认点赞");
         }
 
@@ -474,33 +591,29 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
                 .build();
 
         // 异步发送确认点赞事件到 Pulsar 消息队列
-        pulsarTemplate
-                .sendAsync("thumb-topic", thumbEvent) // 发送到 Pulsar 消息队列中的 thumb-topic 主题中
-                .exceptionally(ex -> { // 出现异常时的处理
-                    redisTemplate.opsForHash().delete(userThumbKey, blogId.toString(), true);
-                    log.debug("确认点赞事件发送失败: userId={}, blogId={}", userId, blogId);
-                    return null;
-                });
+        this.sendThumbEvent(thumbEvent);
 
         return true;
     }
 
     public Boolean thumbAddUnDoUseMQ(Long blogId) {
         String userId = userService.userStatus().getUserId();
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(userId);
+        hotBlogDetector.add(blogId, 1);
+
+        ThumbKeyLayout.ThumbSlot slot = thumbKeyLayout.findSlot(userId, blogId); // 位图布局中博文没有序号时一定没有点赞
+        if (slot == null) {
+            throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已取消点赞");
+        }
 
         log.debug("用户 {} 取消点赞博客 {}", userId, blogId);
 
-        // 执行 Lua 脚本
-        long result = redisTemplate.execute(
-                LuaScriptConstant.UNTHUMB_SCRIPT_MQ,
-                List.of(userThumbKey),
-                blogId
-        );
+        // 执行 Lua 脚本(与其他线程同时提交的操作合并为一次脚本调用)
+        long result = thumbMicroBatcher.execute(slot, ThumbEventDto.EventType.DECR);
 
         if (LuaStatusEnum.FAIL.getValue() == result) {
             throw new BusinessException(CodeBindMessageEnum.CONFLICT_ERROR, "用户已取消点赞");
         }
+        thumbChangeBroadcaster.changed(userId, List.of(), List.of(blogId)); // 点赞集合发生了变化, 通知所有实例失效近端缓存并移出热点用户的集合
 
         // 构造取消点赞事件
         ThumbEventDto thumbEventDto = ThumbEventDto.builder()
@@ -511,15 +624,145 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb> implements
                 .build();
 
         // 异步发送取消点赞事件到 Pulsar 消息队列
+        this.sendThumbEvent(thumbEventDto);
+
+        return true;
+    }
+
+    @Override
+    public List<Boolean> thumbBatchUseMQ(List<ThumbBatchItem> items) {
+        if (items == null || items.isEmpty()) {
+            return List.of();
+        }
+        if (items.size() > batchMaxSize) {
+            throw new BusinessException(CodeBindMessageEnum.PARAMS_ERROR, "单次最多操作 " + batchMaxSize + " 项");
+        }
+        String userId = userService.userStatus().getUserId();
+
+        for (int i = 0; i < items.size(); i++) {
+            ThumbBatchItem item = items.get(i);
+            if (item == null || item.getBlogId() == null || item.getType() == null) {
+                throw new BusinessException(CodeBindMessageEnum.PARAMS_ERROR, "第 " + (i + 1) + " 项操作的博文标识或操作类型为空");
+            }
+        }
+
+        // 点赞的博文获取位置(位图布局中需要时逐个确认博文存在后分配序号, 不存在的博文没有位置, 只有这一项失败), 取消点赞的博文只查询位置, 没有位置时一定没有点赞, 直接视为重复操作
+        Iterator<ThumbKeyLayout.ThumbSlot> thumbSlots = thumbKeyLayout.thumbSlots(userId, items.stream()
+                .filter(item -> item.getType() == ThumbEventDto.EventType.INCR).map(ThumbBatchItem::getBlogId).toList()).iterator();
+        Iterator<ThumbKeyLayout.ThumbSlot> unthumbSlots = thumbKeyLayout.findSlots(userId, items.stream()
+                .filter(item -> item.getType() != ThumbEventDto.EventType.INCR).map(ThumbBatchItem::getBlogId).toList()).iterator();
+
+        // 所有操作在一次 Lua 脚本调用中按顺序执行, 每一项对应一个键, 参数为 "操作类型, 字段(博客 ID 或位图中的位偏移)" 依次排列
+        List<Integer> positions = new ArrayList<>(items.size()); // 脚本中的第 j 项 -> items 中的下标
+        List<String> keys = new ArrayList<>(items.size());
+        List<Object> args = new ArrayList<>(items.size() * 2);
+        boolean[] located = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            ThumbBatchItem item = items.get(i);
+            ThumbKeyLayout.ThumbSlot slot = item.getType() == ThumbEventDto.EventType.INCR ? thumbSlots.next() : unthumbSlots.next();
+            hotBlogDetector.add(item.getBlogId(), 1);
+            if (slot == null) {
+                continue;
+            }
+            located[i] = true;
+            positions.add(i);
+            keys.add(slot.key());
+            args.add(ThumbKeyLayout.batchOperation(item.getType()));
+            args.add(slot.field());
+        }
+        List<?> scriptResults = keys.isEmpty() ? List.of() : thumbRedisTemplate.execute(thumbKeyLayout.batchScript(), keys, args.toArray());
+        long[] results = new long[items.size()];
+        Arrays.fill(results, LuaStatusEnum.FAIL.getValue());
+        for (int j = 0; j < positions.size(); j++) {
+            results[positions.get(j)] = ((Number) scriptResults.get(j)).longValue();
+        }
+
+        // 同一篇博文在批量中先点赞后取消(或者相反)时相互抵消, 每篇博文最多发送一个事件, 避免两个事件被不同的消费者乱序处理
+        List<Boolean> applied = new ArrayList<>(items.size());
+        List<Long> likedBlogIds = new ArrayList<>();
+        List<Long> unlikedBlogIds = new ArrayList<>();
+        List<Long> alreadyLikedBlogIds = new ArrayList<>();
+        Map<Long, ThumbEventDto> events = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            ThumbBatchItem item = items.get(i);
+            boolean success = results[i] == LuaStatusEnum.SUCCESS.getValue();
+            applied.add(success);
+            if (!success) {
+                if (item.getType() == ThumbEventDto.EventType.INCR && located[i]) {
+                    alreadyLikedBlogIds.add(item.getBlogId()); // 早已点赞时只修复本实例的布隆过滤器, 不广播
+                }
+                continue;
+            }
+            (item.getType() == ThumbEventDto.EventType.INCR ? likedBlogIds : unlikedBlogIds).add(item.getBlogId());
+            if (events.remove(item.getBlogId()) == null) {
+                events.put(item.getBlogId(), ThumbEventDto.builder()
+                        .blogId(item.getBlogId())
+                        .userId(Long.valueOf(userId))
+                        .type(item.getType())
+                        .eventTime(LocalDateTime.now())
+                        .build());
+            }
+        }
+        log.debug("用户 {} 批量点赞 {} 项, 执行结果 {}, 需要发送的事件 {} 个", userId, items.size(), applied, events.size());
+
+        // 近端缓存失效、布隆过滤器添加和热点集合移除交给广播线程批量发送, 事件连续异步发送, 由 Pulsar 生产者合并为一个批次发送
+        thumbChangeBroadcaster.changed(userId, likedBlogIds, unlikedBlogIds);
+        thumbChangeBroadcaster.alreadyLiked(userId, alreadyLikedBlogIds);
+        events.values().forEach(this::sendThumbEvent);
+        return applied;
+    }
+
+    /**
+     * 异步发送点赞事件到 Pulsar 消息队列, 发送失败时回滚 Redis 中的点赞记录(以相反的操作执行一次批量脚本, 与键布局无关)
+     */
+    private void sendThumbEvent(ThumbEventDto thumbEvent) {
+        String userId = thumbEvent.getUserId().toString();
+        Long blogId = thumbEvent.getBlogId();
         pulsarTemplate
-                .sendAsync("thumb-topic", thumbEventDto)
-                .exceptionally(ex -> {
-                    redisTemplate.opsForHash().put(userThumbKey, blogId.toString(), true);
-                    log.debug("取消点赞事件发送失败: userId={}, blogId={}", userId, blogId);
+                .sendAsync("thumb-topic", thumbEvent) // 发送到 Pulsar 消息队列中的 thumb-topic 主题中
+                .exceptionally(ex -> { // 出现异常时的处理
+                    ThumbKeyLayout.ThumbSlot slot = thumbKeyLayout.findSlot(userId, blogId); // 刚刚点赞或者取消点赞过, 位置一定存在, 回滚时不会分配序号
+                    if (slot == null) {
+                        log.warn("点赞事件发送失败且找不到点赞记录的位置, 无法回滚: {}", thumbEvent);
+                        return null;
+                    }
+                    if (thumbEvent.getType() == ThumbEventDto.EventType.INCR) {
+                        thumbRedisTemplate.execute(thumbKeyLayout.batchScript(), List.of(slot.key()), ThumbKeyLayout.batchOperation(ThumbEventDto.EventType.DECR), slot.field());
+                        thumbChangeBroadcaster.changed(userId, List.of(), List.of(blogId));
+                        log.debug("确认点赞事件发送失败: userId={}, blogId={}", userId, blogId);
+                    } else {
+                        thumbRedisTemplate.execute(thumbKeyLayout.batchScript(), List.of(slot.key()), ThumbKeyLayout.batchOperation(ThumbEventDto.EventType.INCR), slot.field());
+                        thumbChangeBroadcaster.changed(userId, List.of(blogId), List.of());
+                        log.debug("取消点赞事件发送失败: userId={}, blogId={}", userId, blogId);
+                    }
                     return null;
                 });
+    }
 
-        return true;
+    /**
+     * 执行确认点赞的 Lua 脚本, 返回 LuaStatusEnum 中的状态值
+     */
+    private long executeThumbScript(String userId, Long blogId) {
+        hotBlogDetector.add(blogId, 1);
+        String tempThumbKey = RedisKeyUtil.getTempThumbKey(getTimeSlice()); // key(time_slice) -> "field(user_id:blog_id)=value(is_thumb)", ...
+        ThumbKeyLayout.ThumbSlot slot = thumbKeyLayout.thumbSlot(userId, blogId); // key(user_id) -> "field(blog_id)=value(thumb_id)", ... 或者位图中的一位(博文还没有序号时确认存在后分配)
+
+        // 执行 Lua 脚本
+        long result = thumbRedisTemplate.execute(
+                thumbKeyLayout.thumbScript(),
+                Arrays.asList(tempThumbKey, slot.key()),
+                Long.valueOf(userId),
+                blogId,
+                slot.field()
+        );
+
+        // 点赞集合发生了变化, 通知所有实例失效近端缓存并加入布隆过滤器, 早已点赞时只修复本实例的布隆过滤器, 不广播
+        if (LuaStatusEnum.SUCCESS.getValue() == result) {
+            thumbChangeBroadcaster.changed(userId, List.of(blogId), List.of());
+        } else if (LuaStatusEnum.FAIL.getValue() == result) {
+            thumbChangeBroadcaster.alreadyLiked(userId, List.of(blogId));
+        }
+        return result;
     }
 
     /**
@@ -16,6 +16,34 @@ public class RedisKeyUtil {
         return ThumbConstant.USER_THUMB_KEY_PREFIX + userId;
     }
 
+    /**
+     * 获取分桶布局的用户点赞记录 key 名字
+     */
+    public static String getUserThumbBucketKey(String userId, int bucket) {
+        return ThumbConstant.USER_THUMB_BUCKET_KEY_PREFIX.formatted(userId, bucket);
+    }
+
+    /**
+     * 获取分桶布局的用户桶数 key 名字
+     */
+    public static String getUserThumbBucketsKey(String userId) {
+        return ThumbConstant.USER_THUMB_BUCKETS_KEY_PREFIX.formatted(userId);
+    }
+
+    /**
+     * 获取位图布局的用户点赞记录 key 名字
+     */
+    public static String getUserThumbBitmapKey(String userId, long chunk) {
+        return ThumbConstant.USER_THUMB_BITMAP_KEY_PREFIX.formatted(userId, chunk);
+    }
+
+    /**
+     * 获取位图布局的用户块集合 key 名字
+     */
+    public static String getUserThumbBitmapChunksKey(String userId) {
+        return ThumbConstant.USER_THUMB_BITMAP_CHUNKS_KEY_PREFIX.formatted(userId);
+    }
+
     /**
      * 获取临时点赞记录 key 名字
      */
@@ -23,4 +51,53 @@ public class RedisKeyUtil {
         return ThumbConstant.TEMP_THUMB_KEY_PREFIX.formatted(time); // <=> return String.format(ThumbConstant.TEMP_THUMB_KEY_PREFIX, time);
     }
 
+    /**
+     * 获取微批合并的批次结果 key 名字
+     */
+    public static String getThumbBatchResultKey(String batchId) {
+        return ThumbConstant.THUMB_BATCH_RESULT_KEY_PREFIX.formatted(batchId);
+    }
+
+    /**
+     * 获取集群热点快照 key 名字
+     */
+    public static String getHotKeySnapshotKey(String detector) {
+        return ThumbConstant.HOT_KEY_SNAPSHOT_KEY_PREFIX.formatted(detector);
+    }
+
+    /**
+     * 获取博文点赞用户位图 key 名字
+     */
+    public static String getBlogLikersKey(Long blogId) {
+        return ThumbConstant.BLOG_LIKERS_KEY_PREFIX.formatted(blogId);
+    }
+
+    /**
+     * 获取博文点赞用户位图快照增量序号 key 名字
+     */
+    public static String getBlogLikersVersionKey(Long blogId) {
+        return ThumbConstant.BLOG_LIKERS_VERSION_KEY_PREFIX.formatted(blogId);
+    }
+
+    /**
+     * 获取博文点赞用户位图增量日志 key 名字
+     */
+    public static String getBlogLikersLogKey(Long blogId) {
+        return ThumbConstant.BLOG_LIKERS_LOG_KEY_PREFIX.formatted(blogId);
+    }
+
+    /**
+     * 获取博文点赞用户位图最新增量序号 key 名字
+     */
+    public static String getBlogLikersSeqKey(Long blogId) {
+        return ThumbConstant.BLOG_LIKERS_SEQ_KEY_PREFIX.formatted(blogId);
+    }
+
+    /**
+     * 获取博文三级缓存 key 名字
+     */
+    public static String getBlogCacheKey(Long blogId) {
+        return ThumbConstant.BLOG_CACHE_KEY_PREFIX.formatted(blogId);
+    }
+
 }
@@ -86,7 +86,8 @@ create table `thumb`
     `deleted`     tinyint        DEFAULT '0' COMMENT '是否删除(0 为未删除, 1 为已删除)',
     `create_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间(受时区影响)',
     `update_time` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间(受时区影响)',
-    UNIQUE KEY `idx_user_id_blog_id` (`user_id`, `blog_id`)
+    UNIQUE KEY `idx_user_id_blog_id` (`user_id`, `blog_id`),
+    KEY `idx_blog_id` (`blog_id`)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_unicode_ci COMMENT ='点赞表'